@@ -0,0 +1,114 @@
+package eightbitlab.com.blurview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to blur one frame with each pure Java kernel.
+ * The snapshot size is derived from the BlurView size and the scale factor, the same way the controllers do it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlurKernelBenchmark {
+
+    // BlurView sizes: a full screen, a bottom sheet and a toolbar
+    @Param({"1080x2400", "1080x1200", "1080x200"})
+    public String viewSize;
+
+    @Param({"4", "8"})
+    public float scaleFactor;
+
+    @Param({"10", "25", "100"})
+    public float radius;
+
+    private final StackBlurKernel stackBlur = new StackBlurKernel(StripeExecutor.getDefault());
+    private final StackBlurKernel singleThreadedStackBlur = new StackBlurKernel(new StripeExecutor(1));
+    private final DualKawaseKernel dualKawase = new DualKawaseKernel(StripeExecutor.getDefault());
+
+    private int[] source;
+    private int[] pixels;
+    private short[] packedSource;
+    private short[] packedPixels;
+    private int width;
+    private int height;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] size = viewSize.split("x");
+        SizeScaler.Size scaled = new SizeScaler(scaleFactor).scale(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        width = scaled.width;
+        height = scaled.height;
+
+        Random random = new Random(42);
+        source = new int[width * height];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextInt();
+        }
+        pixels = new int[source.length];
+        packedSource = new short[source.length];
+        Rgb565.pack(source, packedSource, source.length);
+        packedPixels = new short[source.length];
+    }
+
+    // Every blur starts from the same content, like a new snapshot would
+    @Setup(Level.Invocation)
+    public void resetPixels() {
+        System.arraycopy(source, 0, pixels, 0, source.length);
+        System.arraycopy(packedSource, 0, packedPixels, 0, packedSource.length);
+    }
+
+    @Benchmark
+    public int[] stackBlur() {
+        stackBlur.blur(pixels, width, height, Math.round(radius));
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] stackBlurSingleThreaded() {
+        singleThreadedStackBlur.blur(pixels, width, height, Math.round(radius));
+        return pixels;
+    }
+
+    /**
+     * The reduced precision mode, blurring RGB_565 pixels
+     */
+    @Benchmark
+    public short[] stackBlurRgb565() {
+        stackBlur.blur(packedPixels, width, height, Math.round(radius));
+        return packedPixels;
+    }
+
+    @Benchmark
+    public short[] dualKawaseRgb565() {
+        dualKawase.blur(packedPixels, width, height, radius);
+        return packedPixels;
+    }
+
+    @Benchmark
+    public int[] dualKawase() {
+        dualKawase.blur(pixels, width, height, radius);
+        return pixels;
+    }
+
+    /**
+     * The radius-adaptive mode: halving until the radius is small, then blurring the smallest level.
+     * Only the kernel part, the halving itself is done by the Android Canvas.
+     */
+    @Benchmark
+    public int[] stackBlurOnDownsampledLevel() {
+        int steps = SizeScaler.downsampleSteps(radius);
+        stackBlur.blur(pixels, Math.max(1, width >> steps), Math.max(1, height >> steps), Math.round(radius / (1 << steps)));
+        return pixels;
+    }
+}
@@ -0,0 +1,81 @@
+package eightbitlab.com.blurview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JVM side of moving pixels between a Bitmap and the int[] the kernels work on.
+ * {@code Bitmap.copyPixelsToBuffer} and {@code copyPixelsFromBuffer} can't run off a device,
+ * so the native side is approximated by a direct buffer of the same size.
+ * The packed variants copy RGB_565 pixels, which StackBlur blurs without converting them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PixelBufferBenchmark {
+
+    // Snapshot sizes of a full screen BlurView with the scale factor of 4 and 8
+    @Param({"320x711", "192x427"})
+    public String snapshotSize;
+
+    private int[] pixels;
+    private IntBuffer heapBuffer;
+    private IntBuffer nativeBuffer;
+    private ShortBuffer packedHeapBuffer;
+    private ShortBuffer packedNativeBuffer;
+
+    @Setup
+    public void setUp() {
+        String[] size = snapshotSize.split("x");
+        pixels = new int[Integer.parseInt(size[0]) * Integer.parseInt(size[1])];
+        // The way StackBlur and DualKawaseBlur wrap their pixels
+        heapBuffer = IntBuffer.wrap(pixels);
+        nativeBuffer = ByteBuffer.allocateDirect(pixels.length * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        packedHeapBuffer = ShortBuffer.wrap(new short[pixels.length]);
+        packedNativeBuffer = ByteBuffer.allocateDirect(pixels.length * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+    }
+
+    @Benchmark
+    public IntBuffer copyToPixels() {
+        nativeBuffer.rewind();
+        heapBuffer.rewind();
+        heapBuffer.put(nativeBuffer);
+        return heapBuffer;
+    }
+
+    @Benchmark
+    public IntBuffer copyFromPixels() {
+        nativeBuffer.rewind();
+        heapBuffer.rewind();
+        nativeBuffer.put(heapBuffer);
+        return nativeBuffer;
+    }
+
+    @Benchmark
+    public ShortBuffer copyToPackedPixels() {
+        packedNativeBuffer.rewind();
+        packedHeapBuffer.rewind();
+        packedHeapBuffer.put(packedNativeBuffer);
+        return packedHeapBuffer;
+    }
+
+    @Benchmark
+    public ShortBuffer copyFromPackedPixels() {
+        packedNativeBuffer.rewind();
+        packedHeapBuffer.rewind();
+        packedNativeBuffer.put(packedHeapBuffer);
+        return packedNativeBuffer;
+    }
+}
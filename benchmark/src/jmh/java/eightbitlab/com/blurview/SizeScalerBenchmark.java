@@ -0,0 +1,51 @@
+package eightbitlab.com.blurview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame sizing logic of the controllers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SizeScalerBenchmark {
+
+    @Param({"4", "8"})
+    public float scaleFactor;
+
+    private SizeScaler scaler;
+    // Changes on every call, like during a resize animation
+    private int height = 200;
+
+    @Setup
+    public void setUp() {
+        scaler = new SizeScaler(scaleFactor);
+    }
+
+    @Benchmark
+    public SizeScaler.Size scale() {
+        height = height == 2400 ? 200 : height + 1;
+        return scaler.scale(1080, height);
+    }
+
+    @Benchmark
+    public boolean isZeroSized() {
+        height = height == 2400 ? 200 : height + 1;
+        return scaler.isZeroSized(1080, height);
+    }
+
+    @Benchmark
+    public int downsampleSteps() {
+        height = height == 2400 ? 200 : height + 1;
+        return SizeScaler.downsampleSteps(height / 10f);
+    }
+}
@@ -0,0 +1,128 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs {@link BlurAlgorithm#blur(Bitmap, float)} on a background Executor, one snapshot at a time.
+ * <p>
+ * The main thread submits a captured snapshot (the back buffer) and keeps drawing the last completed one.
+ * The worker publishes the blurred bitmap through an atomic slot, the main thread picks it up on the next frame.
+ * While a blur is in flight new snapshots are not accepted, so stale frames are dropped instead of queued.
+ */
+final class AsyncBlurPipeline {
+    private static final int IDLE = 0;
+    private static final int BUSY = 1;
+    private static final int DESTROY_PENDING = 2;
+    private static final int DESTROYED = 3;
+
+    private final BlurAlgorithm algorithm;
+    private final View blurView;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+    private final AtomicReference<Bitmap> completed = new AtomicReference<>();
+    private final Runnable blurTask = this::blurInBackground;
+
+    // Handed over to the worker through Executor.execute(), only touched by it while BUSY
+    private Bitmap inFlightBitmap;
+    private float inFlightRadius;
+    private volatile long lastBlurTimeNanos;
+
+    AsyncBlurPipeline(@NonNull BlurAlgorithm algorithm, @NonNull View blurView) {
+        this.algorithm = algorithm;
+        this.blurView = blurView;
+    }
+
+    /**
+     * @return true if a snapshot is being blurred, and the algorithm can't be used on the main thread
+     */
+    boolean isBusy() {
+        return state.get() != IDLE;
+    }
+
+    /**
+     * Must be called on the main thread when the pipeline isn't busy.
+     * The bitmap must not be touched until it's returned from {@link #takeCompleted()}.
+     */
+    void submit(@NonNull Executor executor, @NonNull Bitmap bitmap, float radius) {
+        if (!state.compareAndSet(IDLE, BUSY)) {
+            return;
+        }
+        inFlightBitmap = bitmap;
+        inFlightRadius = radius;
+        try {
+            executor.execute(blurTask);
+        } catch (RuntimeException e) {
+            // Rejected, for example the executor was shut down. Show the snapshot unblurred rather than nothing.
+            Log.e("BlurView", "Async blur rejected", e);
+            inFlightBitmap = null;
+            completed.set(bitmap);
+            finish();
+        }
+    }
+
+    /**
+     * @return the last blurred bitmap if it wasn't taken yet, null otherwise
+     */
+    @Nullable
+    Bitmap takeCompleted() {
+        return completed.getAndSet(null);
+    }
+
+    /**
+     * @return how long the last blur took on the executor
+     */
+    long getLastBlurTimeNanos() {
+        return lastBlurTimeNanos;
+    }
+
+    /**
+     * Destroys the algorithm right away, or after the in-flight blur is finished.
+     */
+    void destroy() {
+        while (true) {
+            if (state.compareAndSet(IDLE, DESTROYED)) {
+                algorithm.destroy();
+                return;
+            }
+            if (state.compareAndSet(BUSY, DESTROY_PENDING) || state.get() >= DESTROY_PENDING) {
+                return;
+            }
+        }
+    }
+
+    private void blurInBackground() {
+        Bitmap source = inFlightBitmap;
+        inFlightBitmap = null;
+        Bitmap result = source;
+        long start = System.nanoTime();
+        Trace.beginSection("BlurView async blur");
+        try {
+            result = algorithm.blur(source, inFlightRadius);
+        } catch (RuntimeException e) {
+            Log.e("BlurView", "Async blur failed. Rendering unblurred snapshot", e);
+        } finally {
+            Trace.endSection();
+            lastBlurTimeNanos = System.nanoTime() - start;
+            // Even if the blur threw an Error, otherwise the pipeline would stay busy and the BlurView frozen
+            completed.set(result);
+            finish();
+        }
+        // Wake up the main thread to swap the buffers even if nothing else is changing on the screen
+        blurView.postInvalidateOnAnimation();
+    }
+
+    private void finish() {
+        if (!state.compareAndSet(BUSY, IDLE) && state.compareAndSet(DESTROY_PENDING, DESTROYED)) {
+            algorithm.destroy();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Copies a Bitmap into reusable pixel arrays, blurs them with a {@link Kernel} and copies the result back.
+ * Shared by {@link KernelBlur} and {@link BlurEngine}.
+ */
+final class BitmapPixels {
+
+    interface Kernel {
+        /**
+         * Blurs premultiplied ARGB pixels in place
+         */
+        void blurPixels(int[] pixels, int width, int height, float radius);
+
+        /**
+         * Blurs raw RGB_565 pixels in place
+         */
+        void blurPixels(short[] pixels, int width, int height, float radius);
+    }
+
+    /**
+     * Scratch arrays kept between the blurs. Not thread safe.
+     */
+    static final class Buffer {
+        private int[] pixels = new int[0];
+        private IntBuffer pixelBuffer = IntBuffer.wrap(pixels);
+        private short[] packedPixels = new short[0];
+        private ShortBuffer packedBuffer = ShortBuffer.wrap(packedPixels);
+
+        void release() {
+            pixels = new int[0];
+            pixelBuffer = IntBuffer.wrap(pixels);
+            packedPixels = new short[0];
+            packedBuffer = ShortBuffer.wrap(packedPixels);
+        }
+    }
+
+    private BitmapPixels() {
+    }
+
+    /**
+     * @param bitmap bitmap to blur in place, must be mutable and {@link Bitmap.Config#ARGB_8888} or {@link Bitmap.Config#RGB_565}
+     * @param radius blur radius in pixels
+     * @param buffer scratch arrays, only grown
+     */
+    static void blur(Bitmap bitmap, float radius, Buffer buffer, Kernel kernel) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        // Grow only, the buffer area changes its size while the BlurView is scrolled in and out
+        if (bitmap.getConfig() == Bitmap.Config.RGB_565) {
+            if (buffer.packedPixels.length < width * height) {
+                buffer.packedPixels = new short[width * height];
+                buffer.packedBuffer = ShortBuffer.wrap(buffer.packedPixels);
+            }
+            // Half of the bytes of ARGB_8888 are copied, and the kernels blur them without converting
+            buffer.packedBuffer.rewind();
+            bitmap.copyPixelsToBuffer(buffer.packedBuffer);
+            kernel.blurPixels(buffer.packedPixels, width, height, radius);
+            buffer.packedBuffer.rewind();
+            bitmap.copyPixelsFromBuffer(buffer.packedBuffer);
+            return;
+        }
+
+        if (buffer.pixels.length < width * height) {
+            buffer.pixels = new int[width * height];
+            buffer.pixelBuffer = IntBuffer.wrap(buffer.pixels);
+        }
+        // Raw copy keeps the pixels premultiplied, which is what we want to blur
+        buffer.pixelBuffer.rewind();
+        bitmap.copyPixelsToBuffer(buffer.pixelBuffer);
+        kernel.blurPixels(buffer.pixels, width, height, radius);
+        buffer.pixelBuffer.rewind();
+        bitmap.copyPixelsFromBuffer(buffer.pixelBuffer);
+    }
+}
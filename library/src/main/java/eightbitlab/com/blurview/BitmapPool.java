@@ -0,0 +1,174 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * Library-wide pool of the bitmaps used for snapshots.
+ * <p>
+ * Bitmaps are allocated with the width and height rounded up to {@link #BUCKET_SIZE}, so a resized BlurView
+ * can usually keep its bitmap. On API 19+ a bitmap is reconfigured in place to the exact size
+ * as long as it has enough memory and doesn't waste too much of it.
+ * <p>
+ * Released bitmaps are kept until they exceed the {@link #setMaxSize(long) size budget},
+ * then the least recently released ones are dropped.
+ */
+public final class BitmapPool {
+    static final int BUCKET_SIZE = 64;
+    // A bitmap is reused for a smaller size only if it's at most this many times bigger than needed
+    private static final int MAX_WASTE_RATIO = 2;
+    private static final long DEFAULT_MAX_SIZE = 8 * 1024 * 1024;
+    private static final boolean canReconfigure = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+
+    // Least recently released first
+    private static final ArrayList<Bitmap> free = new ArrayList<>();
+    private static long maxSize = DEFAULT_MAX_SIZE;
+    private static long size;
+
+    private BitmapPool() {
+    }
+
+    /**
+     * @param bytes how much memory the unused bitmaps can take. 8 MB by default.
+     *              0 disables pooling, only the in-place resizing is left then.
+     */
+    public static synchronized void setMaxSize(long bytes) {
+        maxSize = bytes;
+        trimToSize(maxSize);
+    }
+
+    public static synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return how much memory the unused bitmaps currently take
+     */
+    public static synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Drops all unused bitmaps
+     */
+    public static synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * Called automatically while a BlurView is attached. Drops a part or all of the unused bitmaps,
+     * depending on how low the memory is.
+     */
+    public static synchronized void onTrimMemory(int level) {
+        trimToSize(MemoryTrimmer.trimmedSize(level, size));
+    }
+
+    /**
+     * @return a mutable bitmap of the exact size and config, with undefined content
+     */
+    @NonNull
+    static synchronized Bitmap obtain(int width, int height, @NonNull Bitmap.Config config) {
+        for (int i = free.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = free.get(i);
+            if (fits(bitmap, width, height, config)) {
+                free.remove(i);
+                size -= byteCount(bitmap);
+                reconfigure(bitmap, width, height, config);
+                return bitmap;
+            }
+        }
+        if (!canReconfigure) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        Bitmap bitmap = Bitmap.createBitmap(roundUp(width), roundUp(height), config);
+        reconfigure(bitmap, width, height, config);
+        return bitmap;
+    }
+
+    /**
+     * Resizes the bitmap in place if possible, otherwise releases it and obtains another one.
+     * The content of the result is undefined.
+     */
+    @NonNull
+    static synchronized Bitmap resize(@Nullable Bitmap bitmap, int width, int height, @NonNull Bitmap.Config config) {
+        if (bitmap != null && !bitmap.isRecycled() && fits(bitmap, width, height, config)) {
+            reconfigure(bitmap, width, height, config);
+            return bitmap;
+        }
+        release(bitmap);
+        return obtain(width, height, config);
+    }
+
+    /**
+     * The bitmap must not be used by the caller afterwards
+     */
+    static synchronized void release(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        for (int i = 0; i < free.size(); i++) {
+            if (free.get(i) == bitmap) {
+                return;
+            }
+        }
+        free.add(bitmap);
+        size += byteCount(bitmap);
+        trimToSize(maxSize);
+    }
+
+    private static boolean fits(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+            return true;
+        }
+        if (!canReconfigure) {
+            return false;
+        }
+        long available = byteCount(bitmap);
+        long needed = (long) width * height * bytesPerPixel(config);
+        long bucket = (long) roundUp(width) * roundUp(height) * bytesPerPixel(config);
+        return available >= needed && available <= Math.max(needed * MAX_WASTE_RATIO, bucket);
+    }
+
+    private static void reconfigure(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        if (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != config) {
+            bitmap.reconfigure(width, height, config);
+        }
+    }
+
+    private static void trimToSize(long maxSize) {
+        while (size > maxSize && !free.isEmpty()) {
+            size -= byteCount(free.remove(0));
+        }
+    }
+
+    /**
+     * @return how much memory the bitmap takes, 0 for null
+     */
+    static long byteCount(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return 0;
+        }
+        return canReconfigure ? bitmap.getAllocationByteCount() : bitmap.getByteCount();
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    private static int roundUp(int value) {
+        return (value + BUCKET_SIZE - 1) / BUCKET_SIZE * BUCKET_SIZE;
+    }
+}
@@ -37,5 +37,22 @@ public interface BlurAlgorithm {
     @NonNull
     Bitmap.Config getSupportedBitmapConfig();
 
+    /**
+     * When the blurred content is opaque, {@link android.graphics.Bitmap.Config#RGB_565} bitmaps
+     * are passed instead of {@link #getSupportedBitmapConfig()} to the algorithms that support them.
+     *
+     * @return true if the algorithm can also blur {@link android.graphics.Bitmap.Config#RGB_565} bitmaps
+     */
+    default boolean supportsRgb565() {
+        return false;
+    }
+
     void render(@NonNull Canvas canvas, @NonNull Bitmap bitmap);
+
+    /**
+     * Frees the buffers kept between the blurs, while the BlurView is detached or hidden.
+     * Unlike {@link #destroy()}, the algorithm can still be used afterwards.
+     */
+    default void releaseBuffers() {
+    }
 }
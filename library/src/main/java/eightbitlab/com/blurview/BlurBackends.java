@@ -0,0 +1,242 @@
+package eightbitlab.com.blurview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Trace;
+import android.renderscript.Allocation;
+import android.renderscript.Element;
+import android.renderscript.RenderScript;
+import android.renderscript.ScriptIntrinsicBlur;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Process-wide registry of the native blur backends, shared by all BlurViews.
+ * <p>
+ * Creating a RenderScript context is expensive, so every {@link RenderScriptBlur} references the same one,
+ * and a BlurView rebound in a RecyclerView item doesn't create a new context.
+ * The Allocations are kept here too, keyed by the buffer bitmap. The buffers come from the {@link BitmapPool},
+ * so a rebound BlurView gets a pooled bitmap back and reuses its Allocations.
+ * <p>
+ * The backend is reference-counted. Once unreferenced, it's kept for the next BlurView
+ * until the system runs low on memory or {@link #clear()} is called.
+ */
+public final class BlurBackends {
+    private static RenderScriptBackend renderScript;
+    private static int references;
+    private static long creationCount;
+    private static long creationTimeNanos;
+    private static long acquireCount;
+    private static long allocationCount;
+
+    private BlurBackends() {
+    }
+
+    /**
+     * @return how many times a backend was created, ideally 1 for the whole process
+     */
+    public static synchronized long getCreationCount() {
+        return creationCount;
+    }
+
+    /**
+     * @return how long creating the backends took in total
+     */
+    public static synchronized long getCreationTimeNanos() {
+        return creationTimeNanos;
+    }
+
+    /**
+     * @return how many times a blur algorithm acquired a backend, created or shared
+     */
+    public static synchronized long getAcquireCount() {
+        return acquireCount;
+    }
+
+    /**
+     * @return how many times the Allocations of a buffer were created. Stays flat while the BlurViews reuse pooled buffers.
+     */
+    public static synchronized long getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * @return how many blur algorithms currently reference a backend
+     */
+    public static synchronized int getReferenceCount() {
+        return references;
+    }
+
+    /**
+     * Destroys the backends that aren't referenced anymore
+     */
+    public static synchronized void clear() {
+        if (references == 0 && renderScript != null) {
+            renderScript.destroy();
+            renderScript = null;
+        }
+    }
+
+    /**
+     * Called automatically while a BlurView is attached.
+     * Destroys the unreferenced backends when the app goes to the background or the memory is critically low.
+     * The Allocations are trimmed like the {@link BitmapPool}.
+     */
+    public static synchronized void onTrimMemory(int level) {
+        if (MemoryTrimmer.clearsEverything(level)) {
+            clear();
+        }
+        if (renderScript != null) {
+            renderScript.trimAllocations(level);
+        }
+    }
+
+    /**
+     * Has to be released with {@link #release(RenderScriptBackend)}
+     *
+     * @throws RuntimeException if RenderScript can't be created
+     */
+    @NonNull
+    static synchronized RenderScriptBackend acquireRenderScript(@NonNull Context context) {
+        acquireCount++;
+        if (renderScript == null) {
+            // Application context, so an unreferenced backend doesn't keep an Activity
+            Context applicationContext = context.getApplicationContext();
+            long start = System.nanoTime();
+            Trace.beginSection("BlurView create RenderScript");
+            try {
+                renderScript = new RenderScriptBackend(applicationContext != null ? applicationContext : context);
+            } finally {
+                Trace.endSection();
+            }
+            creationCount++;
+            creationTimeNanos += System.nanoTime() - start;
+        }
+        references++;
+        return renderScript;
+    }
+
+    static synchronized void release(@NonNull RenderScriptBackend backend) {
+        if (backend == renderScript && references > 0) {
+            references--;
+        }
+    }
+
+    private static synchronized void onAllocationCreated() {
+        allocationCount++;
+    }
+
+    /**
+     * A RenderScript context with its blur script and the Allocations of the recently blurred buffers.
+     * The script is created with the context, so a prewarmed backend doesn't create anything on the first blur.
+     */
+    @SuppressWarnings("deprecation")
+    static final class RenderScriptBackend {
+        // The on-screen, back and scroll buffers of a few BlurViews on the screen
+        private static final int MAX_ALLOCATIONS = 16;
+
+        private final RenderScript renderScript;
+        private final ScriptIntrinsicBlur script;
+        // Least recently used first
+        private final ArrayList<BufferAllocations> allocations = new ArrayList<>();
+
+        private RenderScriptBackend(@NonNull Context context) {
+            renderScript = RenderScript.create(context);
+            script = ScriptIntrinsicBlur.create(renderScript, Element.U8_4(renderScript));
+        }
+
+        /**
+         * Blurs the bitmap in place. Synchronized, BlurViews blurring on an executor and on the main thread share the script.
+         *
+         * @param radius blur radius (1..25)
+         */
+        synchronized void blur(@NonNull Bitmap bitmap, float radius) {
+            BufferAllocations buffer = obtainAllocations(bitmap);
+            script.setRadius(radius);
+            script.setInput(buffer.inAllocation);
+            //do not use inAllocation in forEach. it will cause visual artifacts on blurred Bitmap
+            script.forEach(buffer.outAllocation);
+            buffer.outAllocation.copyTo(bitmap);
+        }
+
+        /**
+         * @return the Allocations of the bitmap, synced with its content. Replaces the least recently used ones if needed.
+         */
+        private BufferAllocations obtainAllocations(@NonNull Bitmap bitmap) {
+            BufferAllocations buffer = null;
+            for (int i = 0; i < allocations.size(); i++) {
+                if (allocations.get(i).bitmap == bitmap) {
+                    buffer = allocations.remove(i);
+                    break;
+                }
+            }
+            // The same bitmap can be resized in place by the BitmapPool
+            if (buffer != null && buffer.width == bitmap.getWidth() && buffer.height == bitmap.getHeight()) {
+                // Same bitmap as in a previous frame or bind, just sync the new content instead of creating an Allocation
+                buffer.inAllocation.copyFrom(bitmap);
+            } else {
+                if (buffer == null) {
+                    buffer = allocations.size() < MAX_ALLOCATIONS ? new BufferAllocations() : allocations.remove(0);
+                }
+                buffer.create(renderScript, bitmap);
+                onAllocationCreated();
+            }
+            allocations.add(buffer);
+            return buffer;
+        }
+
+        /**
+         * Destroys the least recently used Allocations down to the size {@link MemoryTrimmer#trimmedSize} allows.
+         * They keep their bitmaps alive, even after the pool dropped them.
+         */
+        synchronized void trimAllocations(int level) {
+            long count = MemoryTrimmer.trimmedSize(level, allocations.size());
+            while (allocations.size() > count) {
+                allocations.remove(0).destroy();
+            }
+        }
+
+        private synchronized void destroy() {
+            for (BufferAllocations buffer : allocations) {
+                buffer.destroy();
+            }
+            allocations.clear();
+            script.destroy();
+            renderScript.destroy();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static final class BufferAllocations {
+        // The bitmap inAllocation was created from, it shares the pixel memory with it
+        private Bitmap bitmap;
+        private Allocation inAllocation;
+        private Allocation outAllocation;
+        private int width;
+        private int height;
+
+        void create(@NonNull RenderScript renderScript, @NonNull Bitmap bitmap) {
+            destroy();
+            //Allocation will use the same backing array of pixels as bitmap if created with USAGE_SHARED flag
+            inAllocation = Allocation.createFromBitmap(renderScript, bitmap);
+            outAllocation = Allocation.createTyped(renderScript, inAllocation.getType());
+            this.bitmap = bitmap;
+            width = bitmap.getWidth();
+            height = bitmap.getHeight();
+        }
+
+        void destroy() {
+            if (inAllocation != null) {
+                inAllocation.destroy();
+                inAllocation = null;
+            }
+            if (outAllocation != null) {
+                outAllocation.destroy();
+                outAllocation = null;
+            }
+            bitmap = null;
+        }
+    }
+}
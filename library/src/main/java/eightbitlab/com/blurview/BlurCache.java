@@ -0,0 +1,266 @@
+package eightbitlab.com.blurview;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Library-wide cache of blurred results, for content that is shown blurred again and again,
+ * like the same screen behind a dialog.
+ * <p>
+ * Results are only cached for a BlurView with a content key, see {@link BlurViewFacade#setBlurCacheKey(Object)}.
+ * The cache key also includes the buffer size, position, blur radius, scale factor and algorithm,
+ * so a BlurView of another size or with another radius doesn't get a wrong result.
+ * <p>
+ * Cached results are copies, kept until they exceed the {@link #setMaxSize(long) size budget},
+ * then the least recently used ones are dropped.
+ */
+public final class BlurCache {
+    private static final long DEFAULT_MAX_SIZE = 8 * 1024 * 1024;
+
+    // Least recently used first
+    private static final LinkedHashMap<Key, Bitmap> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Canvas copyCanvas = new Canvas();
+    private static final Paint copyPaint = new Paint();
+    private static long maxSize = DEFAULT_MAX_SIZE;
+    private static long size;
+    private static long hitCount;
+    private static long missCount;
+    private static long evictionCount;
+
+    static {
+        copyPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+
+    private BlurCache() {
+    }
+
+    /**
+     * @param bytes how much memory the cached results can take. 8 MB by default. 0 disables caching.
+     */
+    public static synchronized void setMaxSize(long bytes) {
+        maxSize = bytes;
+        trimToSize(maxSize);
+    }
+
+    public static synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return how much memory the cached results currently take
+     */
+    public static synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Drops all cached results
+     */
+    public static synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * Called automatically while a BlurView is attached. Otherwise, for example with {@link BlurEngine},
+     * call it from {@link ComponentCallbacks2#onTrimMemory(int)} of your Application or Activity.
+     * The least recently used results are dropped first, all of them once the app is in the background.
+     */
+    public static synchronized void onTrimMemory(int level) {
+        trimToSize(MemoryTrimmer.trimmedSize(level, size));
+    }
+
+    /**
+     * @return how many times a blurred result was found in the cache
+     */
+    public static synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return how many times a blurred result wasn't found in the cache and had to be blurred
+     */
+    public static synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return how many results were dropped to fit the size budget, including {@link #clear()} and {@link #onTrimMemory(int)}
+     */
+    public static synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Copies the cached result into the destination bitmap.
+     *
+     * @return false on a cache miss, the destination is left untouched then
+     */
+    static synchronized boolean get(@NonNull Key key, @NonNull Bitmap destination) {
+        Bitmap cached = entries.get(key);
+        if (cached == null) {
+            missCount++;
+            return false;
+        }
+        hitCount++;
+        copy(cached, destination);
+        return true;
+    }
+
+    /**
+     * Caches a copy of the blurred result and the key, both stay owned by the caller.
+     */
+    static synchronized void put(@NonNull Key key, @NonNull Bitmap blurred) {
+        if (byteCount(blurred) > maxSize) {
+            return;
+        }
+        Bitmap copy = BitmapPool.obtain(blurred.getWidth(), blurred.getHeight(), blurred.getConfig());
+        copy(blurred, copy);
+        // The caller keeps mutating its key
+        Bitmap previous = entries.put(new Key(key), copy);
+        if (previous != null) {
+            size -= byteCount(previous);
+            BitmapPool.release(previous);
+        }
+        size += byteCount(copy);
+        trimToSize(maxSize);
+    }
+
+    private static void copy(Bitmap from, Bitmap to) {
+        copyCanvas.setBitmap(to);
+        copyCanvas.drawBitmap(from, 0f, 0f, copyPaint);
+        copyCanvas.setBitmap(null);
+    }
+
+    private static void trimToSize(long maxSize) {
+        Iterator<Bitmap> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+            size -= byteCount(bitmap);
+            evictionCount++;
+            BitmapPool.release(bitmap);
+        }
+    }
+
+    private static long byteCount(Bitmap bitmap) {
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * Identifies a blurred result: the content, which part of it was captured and how it was blurred.
+     * <p>
+     * Mutable, so the callers can reuse one instance for the lookups. The cache stores its own copy.
+     */
+    static final class Key {
+        private Object content;
+        private int left;
+        private int top;
+        private int right;
+        private int bottom;
+        private int width;
+        private int height;
+        private float blurRadius;
+        private float scaleFactor;
+        @Nullable
+        private Bitmap.Config config;
+        private Object algorithm;
+        private boolean adaptiveDownsampling;
+
+        Key() {
+        }
+
+        private Key(@NonNull Key other) {
+            content = other.content;
+            left = other.left;
+            top = other.top;
+            right = other.right;
+            bottom = other.bottom;
+            width = other.width;
+            height = other.height;
+            blurRadius = other.blurRadius;
+            scaleFactor = other.scaleFactor;
+            config = other.config;
+            algorithm = other.algorithm;
+            adaptiveDownsampling = other.adaptiveDownsampling;
+        }
+
+        /**
+         * @param content              caller-provided key of the blurred content
+         * @param area                 captured area of the content, in pixels
+         * @param width                size of the blurred bitmap
+         * @param height               size of the blurred bitmap
+         * @param blurRadius           blur radius in the bitmap pixels
+         * @param scaleFactor          how many times the content was downscaled
+         * @param config               config of the blurred bitmap
+         * @param algorithm            identifies the blur algorithm, like its class
+         * @param adaptiveDownsampling whether the snapshot was downsampled further for a large radius
+         * @return this key
+         */
+        @NonNull
+        Key set(@NonNull Object content, @NonNull Rect area, int width, int height,
+                float blurRadius, float scaleFactor, @Nullable Bitmap.Config config,
+                @NonNull Object algorithm, boolean adaptiveDownsampling) {
+            this.content = content;
+            this.left = area.left;
+            this.top = area.top;
+            this.right = area.right;
+            this.bottom = area.bottom;
+            this.width = width;
+            this.height = height;
+            this.blurRadius = blurRadius;
+            this.scaleFactor = scaleFactor;
+            this.config = config;
+            this.algorithm = algorithm;
+            this.adaptiveDownsampling = adaptiveDownsampling;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return left == key.left
+                    && top == key.top
+                    && right == key.right
+                    && bottom == key.bottom
+                    && width == key.width
+                    && height == key.height
+                    && Float.compare(key.blurRadius, blurRadius) == 0
+                    && Float.compare(key.scaleFactor, scaleFactor) == 0
+                    && config == key.config
+                    && adaptiveDownsampling == key.adaptiveDownsampling
+                    && algorithm.equals(key.algorithm)
+                    && content.equals(key.content);
+        }
+
+        // Not Objects.hash, it boxes the fields into a new array on every lookup
+        @Override
+        public int hashCode() {
+            int result = content.hashCode();
+            result = 31 * result + left;
+            result = 31 * result + top;
+            result = 31 * result + right;
+            result = 31 * result + bottom;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + Float.floatToIntBits(blurRadius);
+            result = 31 * result + Float.floatToIntBits(scaleFactor);
+            result = 31 * result + (config != null ? config.hashCode() : 0);
+            result = 31 * result + algorithm.hashCode();
+            result = 31 * result + (adaptiveDownsampling ? 1 : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package eightbitlab.com.blurview;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * One-time device calibration, picking the {@link BlurQuality} and the {@link BlurAlgorithm} for API &lt; 31.
+ * <p>
+ * Times the available algorithms on a synthetic snapshot of a large BlurView, for each preset from
+ * {@link BlurQuality#HIGH} down, and picks the best preset the fastest algorithm blurs within the frame budget.
+ * The result is persisted, so the measurement runs only once. Later {@link #calibrate(Context)} calls,
+ * as well as {@link BlurPrewarm}, just load it on their background thread:
+ * <pre>
+ * // On the app start
+ * BlurCalibration.calibrate(context);
+ * // Later
+ * blurView.setupWith(target, BlurCalibration.getQuality());
+ * </pre>
+ * On API 31+ the blur is done by RenderEffect, so nothing is measured and {@link BlurQuality#HIGH} is picked.
+ */
+public final class BlurCalibration {
+    /**
+     * How long blurring a snapshot may take, 4 ms leaves most of a 60 Hz frame to the app
+     */
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 4_000_000;
+
+    private static final String PREFERENCES = "eightbitlab.blurview.calibration";
+    private static final String KEY_QUALITY = "quality";
+    private static final String KEY_ALGORITHM = "algorithm";
+    private static final String KEY_BLUR_TIME = "blur_time";
+    // Size of the synthetic BlurView, about a half of a typical phone screen
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1200;
+    private static final int WARM_UP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+
+    /**
+     * Algorithms the calibration can pick
+     */
+    enum Candidate {
+        RENDER_SCRIPT,
+        STACK_BLUR,
+        DUAL_KAWASE;
+
+        /**
+         * @throws RuntimeException if RenderScript can't be created
+         */
+        @NonNull
+        @SuppressWarnings("deprecation")
+        BlurAlgorithm create(@NonNull Context context) {
+            switch (this) {
+                case RENDER_SCRIPT:
+                    return new RenderScriptBlur(context);
+                case DUAL_KAWASE:
+                    return new DualKawaseBlur();
+                default:
+                    return new StackBlur();
+            }
+        }
+    }
+
+    /**
+     * The outcome of {@link #calibrate(Context)}
+     */
+    public static final class Result {
+        @NonNull
+        final BlurQuality quality;
+        @Nullable
+        final Candidate algorithm;
+        final long blurTimeNanos;
+
+        Result(@NonNull BlurQuality quality, @Nullable Candidate algorithm, long blurTimeNanos) {
+            this.quality = quality;
+            this.algorithm = algorithm;
+            this.blurTimeNanos = blurTimeNanos;
+        }
+
+        @NonNull
+        public BlurQuality getQuality() {
+            return quality;
+        }
+
+        /**
+         * @return the picked algorithm, like StackBlur. Null on API 31+, where RenderEffect is used.
+         */
+        @Nullable
+        public String getAlgorithmName() {
+            return algorithm != null ? algorithm.name() : null;
+        }
+
+        /**
+         * @return how long the picked algorithm took to blur the snapshot of the picked quality, 0 on API 31+
+         */
+        public long getBlurTimeNanos() {
+            return blurTimeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "BlurCalibration.Result{" +
+                    "quality=" + quality +
+                    ", algorithm=" + algorithm +
+                    ", blurTimeNanos=" + blurTimeNanos +
+                    '}';
+        }
+    }
+
+    // Measured or loaded on a background thread, null until then
+    @Nullable
+    private static volatile Result current;
+
+    private BlurCalibration() {
+    }
+
+    /**
+     * Runs the calibration with {@link #DEFAULT_FRAME_BUDGET_NANOS} on a new background thread and persists the result.
+     * If a result was persisted before, it's loaded instead.
+     *
+     * @return future of the result
+     */
+    @NonNull
+    public static Future<Result> calibrate(@NonNull Context context) {
+        return calibrate(context, DEFAULT_FRAME_BUDGET_NANOS);
+    }
+
+    /**
+     * Runs the calibration on a new background thread and persists the result.
+     * If a result was persisted before, it's loaded instead, see {@link #reset(Context)}.
+     *
+     * @param frameBudgetNanos how long blurring a snapshot may take
+     * @return future of the result
+     */
+    @NonNull
+    public static Future<Result> calibrate(@NonNull Context context, long frameBudgetNanos) {
+        Context applicationContext = context.getApplicationContext();
+        Context appContext = applicationContext != null ? applicationContext : context;
+        FutureTask<Result> task = new FutureTask<>(() -> {
+            Result result = load(appContext);
+            if (result != null) {
+                return result;
+            }
+            result = BlurTarget.canUseHardwareRendering
+                    ? new Result(BlurQuality.HIGH, null, 0)
+                    : measure(appContext, frameBudgetNanos);
+            save(appContext, result);
+            return result;
+        });
+        Thread thread = new Thread(task, "BlurView calibration");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    /**
+     * Doesn't read the persisted result, so it's safe on the main thread
+     *
+     * @return true once {@link #calibrate(Context)} or {@link BlurPrewarm} measured or loaded the result
+     */
+    public static boolean isCalibrated() {
+        return current != null;
+    }
+
+    /**
+     * Doesn't read the persisted result, so it's safe on the main thread
+     *
+     * @return the calibrated quality, or {@link BlurQuality#HIGH} if the result isn't measured or loaded yet
+     */
+    @NonNull
+    public static BlurQuality getQuality() {
+        Result result = current;
+        return result != null ? result.quality : BlurQuality.HIGH;
+    }
+
+    /**
+     * Forgets the persisted result, for example after an app update changing the blurred UI
+     */
+    public static void reset(@NonNull Context context) {
+        current = null;
+        preferences(context).edit()
+                .remove(KEY_QUALITY)
+                .remove(KEY_ALGORITHM)
+                .remove(KEY_BLUR_TIME)
+                .apply();
+    }
+
+    /**
+     * @return the calibrated algorithm, or null to use the default one
+     */
+    @Nullable
+    static BlurAlgorithm createAlgorithm(@NonNull Context context) {
+        Result result = current;
+        Candidate candidate = result != null ? result.algorithm : null;
+        if (candidate == null) {
+            return null;
+        }
+        try {
+            return candidate.create(context);
+        } catch (RuntimeException e) {
+            Log.e("BlurView", "Can't create the calibrated algorithm " + candidate, e);
+            return null;
+        }
+    }
+
+    private static Result measure(Context context, long frameBudgetNanos) {
+        Result fallback = null;
+        for (BlurQuality candidateQuality : new BlurQuality[]{BlurQuality.HIGH, BlurQuality.BALANCED, BlurQuality.LOW}) {
+            SizeScaler.Size size = new SizeScaler(candidateQuality.scaleFactor).scaleToGrid(VIEW_WIDTH, VIEW_HEIGHT);
+            Bitmap snapshot = BitmapPool.obtain(size.width, size.height, Bitmap.Config.ARGB_8888);
+            Candidate fastest = null;
+            long fastestTime = Long.MAX_VALUE;
+            try {
+                for (Candidate candidate : Candidate.values()) {
+                    long time = time(context, candidate, candidateQuality, snapshot);
+                    if (time < fastestTime) {
+                        fastest = candidate;
+                        fastestTime = time;
+                    }
+                }
+            } finally {
+                BitmapPool.release(snapshot);
+            }
+            if (fastest == null) {
+                continue;
+            }
+            fallback = new Result(candidateQuality, fastest, fastestTime);
+            if (fastestTime <= frameBudgetNanos) {
+                return fallback;
+            }
+        }
+        // Even LOW doesn't fit, but it's still the cheapest option
+        return fallback != null ? fallback : new Result(BlurQuality.LOW, null, 0);
+    }
+
+    /**
+     * @return the median blur time, or Long.MAX_VALUE if the algorithm isn't available
+     */
+    private static long time(Context context, Candidate candidate, BlurQuality quality, Bitmap snapshot) {
+        BlurAlgorithm algorithm;
+        try {
+            algorithm = candidate.create(context);
+        } catch (RuntimeException e) {
+            Log.e("BlurView", "Skipping " + candidate + " in the calibration", e);
+            return Long.MAX_VALUE;
+        }
+        PyramidBlur blur = new PyramidBlur(algorithm);
+        blur.setEnabled(quality.adaptiveDownsampling);
+        long[] times = new long[MEASURED_RUNS];
+        try {
+            for (int i = 0; i < WARM_UP_RUNS + MEASURED_RUNS; i++) {
+                fillSynthetic(snapshot, i);
+                long start = System.nanoTime();
+                // The radius the preset is set up with, so every preset blurs the same part of the content
+                blur.blur(snapshot, quality.scaleRadius(BlurController.DEFAULT_BLUR_RADIUS));
+                if (i >= WARM_UP_RUNS) {
+                    times[i - WARM_UP_RUNS] = System.nanoTime() - start;
+                }
+            }
+        } finally {
+            blur.destroy();
+        }
+        Arrays.sort(times);
+        return times[MEASURED_RUNS / 2];
+    }
+
+    private static void fillSynthetic(Bitmap snapshot, int seed) {
+        int width = snapshot.getWidth();
+        int height = snapshot.getHeight();
+        int[] pixels = new int[width * height];
+        Random random = new Random(seed);
+        for (int i = 0; i < pixels.length; i++) {
+            // Opaque, like most of the blurred content
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        snapshot.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    private static void save(Context context, Result result) {
+        synchronized (BlurCalibration.class) {
+            current = result;
+        }
+        preferences(context).edit()
+                .putString(KEY_QUALITY, result.quality.name())
+                .putString(KEY_ALGORITHM, result.algorithm != null ? result.algorithm.name() : null)
+                .putLong(KEY_BLUR_TIME, result.blurTimeNanos)
+                .apply();
+    }
+
+    /**
+     * Reads the persisted result, so it has to be called on a background thread
+     *
+     * @return the current result, or null if there is none
+     */
+    @Nullable
+    static Result load(@NonNull Context context) {
+        Result result = current;
+        if (result != null) {
+            return result;
+        }
+        SharedPreferences preferences = preferences(context);
+        String savedQuality = preferences.getString(KEY_QUALITY, null);
+        if (savedQuality == null) {
+            return null;
+        }
+        String savedAlgorithm = preferences.getString(KEY_ALGORITHM, null);
+        try {
+            result = new Result(BlurQuality.valueOf(savedQuality),
+                    savedAlgorithm != null ? Candidate.valueOf(savedAlgorithm) : null,
+                    preferences.getLong(KEY_BLUR_TIME, 0));
+        } catch (IllegalArgumentException e) {
+            // Saved by a library version with other presets
+            return null;
+        }
+        synchronized (BlurCalibration.class) {
+            // A calibration could finish meanwhile
+            if (current == null) {
+                current = result;
+            }
+            return current;
+        }
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+}
@@ -23,4 +23,9 @@ public interface BlurController extends BlurViewFacade {
      * Frees allocated resources
      */
     void destroy();
+
+    /**
+     * Frees the buffers while the BlurView is detached or hidden. They are recreated on the next update.
+     */
+    void releaseBuffers();
 }
@@ -0,0 +1,42 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.RenderEffect;
+import android.graphics.Shader;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Blur RenderEffects are immutable, so the ones with the same radius and tile mode are shared
+ * between the BlurViews instead of being created on every radius change.
+ */
+@RequiresApi(api = Build.VERSION_CODES.S)
+final class BlurEffectCache {
+    private static final int MAX_SIZE = 8;
+
+    // Least recently used first
+    private static final LinkedHashMap<Long, RenderEffect> effects = new LinkedHashMap<Long, RenderEffect>(MAX_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RenderEffect> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private BlurEffectCache() {
+    }
+
+    @NonNull
+    static synchronized RenderEffect get(float radius, @NonNull Shader.TileMode tileMode) {
+        long key = (long) Float.floatToIntBits(radius) << 8 | tileMode.ordinal();
+        RenderEffect effect = effects.get(key);
+        if (effect == null) {
+            effect = RenderEffect.createBlurEffect(radius, radius, tileMode);
+            effects.put(key, effect);
+        }
+        return effect;
+    }
+}
@@ -0,0 +1,264 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Blurs Bitmaps and pixel arrays on a fixed pool of background threads, without a BlurView.
+ * Useful for thumbnails, placeholders or notification art.
+ * <p>
+ * Each job is processed by a single worker with the pure Java kernels of {@link StackBlur} or {@link DualKawaseBlur},
+ * so a batch of jobs is blurred in parallel. Workers keep their scratch buffers between the jobs.
+ * <p>
+ * The int[] path doesn't touch any Android classes.
+ * <p>
+ * Shut the engine down with {@link #shutdown()} when it's not needed anymore.
+ */
+public final class BlurEngine {
+
+    public enum Algorithm {
+        /**
+         * See {@link StackBlur}
+         */
+        STACK_BLUR,
+        /**
+         * See {@link DualKawaseBlur}
+         */
+        DUAL_KAWASE
+    }
+
+    /**
+     * Called on the worker thread, post the result to the main thread if needed.
+     */
+    public interface Callback<T> {
+        void onBlurred(@NonNull T result);
+
+        void onError(@NonNull Exception error);
+    }
+
+    private final Algorithm algorithm;
+    private final ExecutorService executor;
+    private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+        @Override
+        protected Worker initialValue() {
+            return new Worker();
+        }
+    };
+
+    /**
+     * Creates an engine with {@link Algorithm#STACK_BLUR} and a worker per CPU core, leaving one for the UI
+     */
+    public BlurEngine() {
+        this(Algorithm.STACK_BLUR, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * @param algorithm   the blur algorithm
+     * @param threadCount how many jobs can be blurred in parallel
+     */
+    public BlurEngine(@NonNull Algorithm algorithm, int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("threadCount must be positive, was " + threadCount);
+        }
+        this.algorithm = algorithm;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "BlurEngine worker " + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param pixels packed pixels, blurred in place. Premultiplied if they have transparency.
+     * @param radius blur radius in pixels
+     * @return future of the same array
+     */
+    @NonNull
+    public Future<int[]> blur(@NonNull int[] pixels, int width, int height, float radius) {
+        return blur(pixels, width, height, radius, null);
+    }
+
+    /**
+     * @param pixels   packed pixels, blurred in place. Premultiplied if they have transparency.
+     * @param radius   blur radius in pixels
+     * @param callback optional callback with the same array
+     * @return future of the same array
+     */
+    @NonNull
+    public Future<int[]> blur(@NonNull int[] pixels, int width, int height, float radius,
+                              @Nullable Callback<int[]> callback) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Expected at least " + width * height + " pixels, got " + pixels.length);
+        }
+        return submit(() -> {
+            workers.get().blurPixels(pixels, width, height, radius);
+            return pixels;
+        }, callback);
+    }
+
+    /**
+     * Blurs several pixel arrays of the same size in parallel
+     *
+     * @return futures in the order of the arrays
+     */
+    @NonNull
+    public List<Future<int[]>> blurAll(@NonNull List<int[]> pixels, int width, int height, float radius) {
+        List<Future<int[]>> futures = new ArrayList<>(pixels.size());
+        for (int[] item : pixels) {
+            futures.add(blur(item, width, height, radius));
+        }
+        return futures;
+    }
+
+    /**
+     * @param bitmap bitmap to blur in place, must be mutable and {@link Bitmap.Config#ARGB_8888} or {@link Bitmap.Config#RGB_565}
+     * @param radius blur radius in pixels
+     * @return future of the same bitmap
+     */
+    @NonNull
+    public Future<Bitmap> blur(@NonNull Bitmap bitmap, float radius) {
+        return blur(bitmap, radius, null, null);
+    }
+
+    /**
+     * @param bitmap   bitmap to blur in place, must be mutable and {@link Bitmap.Config#ARGB_8888} or {@link Bitmap.Config#RGB_565}
+     * @param radius   blur radius in pixels
+     * @param cacheKey optional key of the bitmap content. The result is then looked up in and put into the {@link BlurCache}
+     * @param callback optional callback with the same bitmap
+     * @return future of the same bitmap
+     */
+    @NonNull
+    public Future<Bitmap> blur(@NonNull Bitmap bitmap, float radius, @Nullable Object cacheKey,
+                               @Nullable Callback<Bitmap> callback) {
+        return submit(() -> {
+            Worker worker = workers.get();
+            BlurCache.Key key = null;
+            if (cacheKey != null) {
+                key = worker.cacheKey(cacheKey, bitmap, radius);
+                if (BlurCache.get(key, bitmap)) {
+                    return bitmap;
+                }
+            }
+            worker.blur(bitmap, radius);
+            if (key != null) {
+                BlurCache.put(key, bitmap);
+            }
+            return bitmap;
+        }, callback);
+    }
+
+    /**
+     * Blurs several bitmaps in parallel
+     *
+     * @return futures in the order of the bitmaps
+     */
+    @NonNull
+    public List<Future<Bitmap>> blurAll(@NonNull List<Bitmap> bitmaps, float radius) {
+        List<Future<Bitmap>> futures = new ArrayList<>(bitmaps.size());
+        for (Bitmap bitmap : bitmaps) {
+            futures.add(blur(bitmap, radius));
+        }
+        return futures;
+    }
+
+    /**
+     * Finishes the already submitted jobs and stops the workers. New jobs are rejected after that.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> Future<T> submit(Callable<T> job, @Nullable Callback<T> callback) {
+        if (callback == null) {
+            return executor.submit(job);
+        }
+        return executor.submit(() -> {
+            T result;
+            try {
+                result = job.call();
+            } catch (Exception e) {
+                callback.onError(e);
+                throw e;
+            }
+            callback.onBlurred(result);
+            return result;
+        });
+    }
+
+    /**
+     * Per-thread kernels and buffers
+     */
+    private final class Worker implements BitmapPixels.Kernel {
+        // A single stripe, the parallelism comes from the jobs
+        private final StripeExecutor stripeExecutor = new StripeExecutor(1);
+        @Nullable
+        private StackBlurKernel stackBlur;
+        @Nullable
+        private DualKawaseKernel dualKawase;
+        private final BitmapPixels.Buffer buffer = new BitmapPixels.Buffer();
+        // Reused for the BlurCache lookups. Created on the first one, so the int[] path doesn't load Rect.
+        @Nullable
+        private BlurCache.Key cacheKey;
+        @Nullable
+        private Rect cacheArea;
+
+        @Override
+        public void blurPixels(int[] pixels, int width, int height, float radius) {
+            if (algorithm == Algorithm.DUAL_KAWASE) {
+                dualKawase().blur(pixels, width, height, radius);
+            } else {
+                stackBlur().blur(pixels, width, height, Math.round(radius));
+            }
+        }
+
+        @Override
+        public void blurPixels(short[] pixels, int width, int height, float radius) {
+            if (algorithm == Algorithm.DUAL_KAWASE) {
+                dualKawase().blur(pixels, width, height, radius);
+            } else {
+                stackBlur().blur(pixels, width, height, Math.round(radius));
+            }
+        }
+
+        private DualKawaseKernel dualKawase() {
+            if (dualKawase == null) {
+                dualKawase = new DualKawaseKernel(stripeExecutor);
+            }
+            return dualKawase;
+        }
+
+        private StackBlurKernel stackBlur() {
+            if (stackBlur == null) {
+                stackBlur = new StackBlurKernel(stripeExecutor);
+            }
+            return stackBlur;
+        }
+
+        BlurCache.Key cacheKey(Object content, Bitmap bitmap, float radius) {
+            if (cacheKey == null) {
+                cacheKey = new BlurCache.Key();
+                cacheArea = new Rect();
+            }
+            cacheArea.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
+            cacheKey.set(content, cacheArea, bitmap.getWidth(), bitmap.getHeight(),
+                    radius, 1f, bitmap.getConfig(), algorithm, false);
+            return cacheKey;
+        }
+
+        void blur(Bitmap bitmap, float radius) {
+            BitmapPixels.blur(bitmap, radius, buffer, this);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The cost of a single blur update, reported to a {@link BlurMetricsListener}.
+ * <p>
+ * On API 31+ the snapshot is recorded on the main thread, but captured and blurred on the RenderThread,
+ * so the capture time is the recording time and the blur time is 0.
+ */
+public final class BlurFrameMetrics {
+    boolean updateSkipped;
+    long captureTimeNanos;
+    long blurTimeNanos;
+    long drawTimeNanos;
+    int bitmapWidth;
+    int bitmapHeight;
+    long bitmapBytes;
+
+    /**
+     * @return true if the blur wasn't updated on this frame, for example because nothing under the BlurView changed
+     */
+    public boolean isUpdateSkipped() {
+        return updateSkipped;
+    }
+
+    /**
+     * @return time spent drawing the view hierarchy into the snapshot
+     */
+    public long getCaptureTimeNanos() {
+        return captureTimeNanos;
+    }
+
+    /**
+     * @return time spent blurring the snapshot. In the async mode it's measured on the executor,
+     * for the result put on the screen on this frame.
+     */
+    public long getBlurTimeNanos() {
+        return blurTimeNanos;
+    }
+
+    /**
+     * @return time spent drawing the blurred content of the BlurView since the previous report, 0 if it wasn't drawn
+     */
+    public long getDrawTimeNanos() {
+        return drawTimeNanos;
+    }
+
+    /**
+     * @return width of the snapshot bitmap, 0 if there is none
+     */
+    public int getBitmapWidth() {
+        return bitmapWidth;
+    }
+
+    /**
+     * @return height of the snapshot bitmap, 0 if there is none
+     */
+    public int getBitmapHeight() {
+        return bitmapHeight;
+    }
+
+    /**
+     * @return memory used by the pixels of the snapshot bitmap
+     */
+    public long getBitmapBytes() {
+        return bitmapBytes;
+    }
+
+    void reset() {
+        updateSkipped = false;
+        captureTimeNanos = 0;
+        blurTimeNanos = 0;
+        drawTimeNanos = 0;
+        bitmapWidth = 0;
+        bitmapHeight = 0;
+        bitmapBytes = 0;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BlurFrameMetrics{" +
+                "updateSkipped=" + updateSkipped +
+                ", captureTimeNanos=" + captureTimeNanos +
+                ", blurTimeNanos=" + blurTimeNanos +
+                ", drawTimeNanos=" + drawTimeNanos +
+                ", bitmapWidth=" + bitmapWidth +
+                ", bitmapHeight=" + bitmapHeight +
+                ", bitmapBytes=" + bitmapBytes +
+                '}';
+    }
+}
@@ -0,0 +1,17 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives the cost of every blur update of a BlurView, for example to attribute janky frames in production.
+ *
+ * @see BlurViewFacade#setBlurMetricsListener(BlurMetricsListener)
+ */
+public interface BlurMetricsListener {
+    /**
+     * Called on the main thread after every blur update attempt, including the skipped ones.
+     *
+     * @param metrics the metrics of the frame. The instance is reused, don't keep a reference to it.
+     */
+    void onFrameMetrics(@NonNull BlurFrameMetrics metrics);
+}
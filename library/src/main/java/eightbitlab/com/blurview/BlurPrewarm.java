@@ -0,0 +1,210 @@
+package eightbitlab.com.blurview;
+
+import static eightbitlab.com.blurview.BlurController.DEFAULT_SCALE_FACTOR;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Does the first-use work of the blur on a background thread, so the first BlurView on the screen
+ * doesn't drop a frame: loads the persisted {@link BlurCalibration} result, generates the noise tile,
+ * creates the RenderScript context and its blur script on API &lt; 31
+ * and fills the {@link BitmapPool} with the buffers of the expected BlurView sizes.
+ * <p>
+ * Start it early, for example before opening a blurred dialog:
+ * <pre>
+ * new BlurPrewarm(context)
+ *         .addViewSize(dialogWidth, dialogHeight)
+ *         .start();
+ * </pre>
+ *
+ * @see BlurView#prewarm(Context, int, int)
+ */
+public final class BlurPrewarm {
+
+    /**
+     * What was warmed up. Work done before, for example by a BlurView already on the screen, isn't counted.
+     */
+    public static final class Report {
+        boolean noiseGenerated;
+        boolean backendCreated;
+        int pooledBitmaps;
+        long pooledBytes;
+        long timeNanos;
+
+        /**
+         * @return true if the noise tile of the default intensity was generated
+         */
+        public boolean isNoiseGenerated() {
+            return noiseGenerated;
+        }
+
+        /**
+         * @return true if the RenderScript context was created, see {@link BlurBackends}
+         */
+        public boolean isBackendCreated() {
+            return backendCreated;
+        }
+
+        /**
+         * @return how many buffers were put into the {@link BitmapPool}
+         */
+        public int getPooledBitmaps() {
+            return pooledBitmaps;
+        }
+
+        /**
+         * @return how much the {@link BitmapPool} grew. Less than the buffers take if they exceed its size budget.
+         */
+        public long getPooledBytes() {
+            return pooledBytes;
+        }
+
+        /**
+         * @return how long the prewarm took on the background thread
+         */
+        public long getTimeNanos() {
+            return timeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "BlurPrewarm.Report{" +
+                    "noiseGenerated=" + noiseGenerated +
+                    ", backendCreated=" + backendCreated +
+                    ", pooledBitmaps=" + pooledBitmaps +
+                    ", pooledBytes=" + pooledBytes +
+                    ", timeNanos=" + timeNanos +
+                    '}';
+        }
+    }
+
+    private final Context context;
+    private final ArrayList<SizeScaler.Size> viewSizes = new ArrayList<>();
+    private float scaleFactor = DEFAULT_SCALE_FACTOR;
+    private boolean opaqueContent;
+
+    public BlurPrewarm(@NonNull Context context) {
+        // Runs on a background thread, so an Activity isn't kept longer than needed
+        Context applicationContext = context.getApplicationContext();
+        this.context = applicationContext != null ? applicationContext : context;
+    }
+
+    /**
+     * @param width  expected BlurView width in pixels
+     * @param height expected BlurView height in pixels
+     * @return {@link BlurPrewarm}
+     */
+    @NonNull
+    public BlurPrewarm addViewSize(int width, int height) {
+        viewSizes.add(new SizeScaler.Size(width, height));
+        return this;
+    }
+
+    /**
+     * @param scaleFactor the scale factor the BlurViews are set up with, {@link BlurController#DEFAULT_SCALE_FACTOR} by default
+     * @return {@link BlurPrewarm}
+     */
+    @NonNull
+    public BlurPrewarm setScaleFactor(float scaleFactor) {
+        this.scaleFactor = scaleFactor;
+        return this;
+    }
+
+    /**
+     * @param opaque true if the BlurTarget background or the frame clear drawable is opaque.
+     *               The BlurViews then use {@link Bitmap.Config#RGB_565} buffers with the algorithms that support them,
+     *               unless the reduced precision is disabled, see {@link BlurViewFacade#setReducedPrecision(boolean)}.
+     *               False by default.
+     * @return {@link BlurPrewarm}
+     */
+    @NonNull
+    public BlurPrewarm setOpaqueContent(boolean opaque) {
+        this.opaqueContent = opaque;
+        return this;
+    }
+
+    /**
+     * Starts the prewarm on a new background thread
+     *
+     * @return future of the report
+     */
+    @NonNull
+    public Future<Report> start() {
+        ArrayList<SizeScaler.Size> sizes = new ArrayList<>(viewSizes);
+        float scaleFactor = this.scaleFactor;
+        boolean opaque = this.opaqueContent;
+        FutureTask<Report> task = new FutureTask<>(() -> run(sizes, scaleFactor, opaque));
+        Thread thread = new Thread(task, "BlurView prewarm");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    private Report run(ArrayList<SizeScaler.Size> sizes, float scaleFactor, boolean opaque) {
+        Report report = new Report();
+        long start = System.nanoTime();
+        // Loaded here, so BlurView.setupWith doesn't read the preferences on the main thread
+        BlurCalibration.load(context);
+        report.noiseGenerated = Noise.prewarm(NoiseGenerator.DEFAULT_INTENSITY);
+        if (!BlurTarget.canUseHardwareRendering) {
+            long creationCount = BlurBackends.getCreationCount();
+            // Unreferenced right away, but the backend is kept for the first BlurView
+            BlurAlgorithm algorithm = createAlgorithm();
+            report.backendCreated = BlurBackends.getCreationCount() != creationCount;
+            try {
+                fillPool(report, sizes, scaleFactor, BufferConfig.choose(algorithm, true, opaque));
+            } finally {
+                algorithm.destroy();
+            }
+        }
+        // On API 31+ the blur is done by RenderEffect, it doesn't use the pool or the backends
+        report.timeNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    /**
+     * @return the algorithm a BlurView set up without one would use
+     */
+    @NonNull
+    @SuppressWarnings("deprecation")
+    private BlurAlgorithm createAlgorithm() {
+        BlurAlgorithm algorithm = BlurCalibration.createAlgorithm(context);
+        if (algorithm != null) {
+            return algorithm;
+        }
+        try {
+            return new RenderScriptBlur(context);
+        } catch (RuntimeException e) {
+            // The BlurView falls back to StackBlur in this case
+            Log.e("BlurView", "Can't create RenderScript during prewarm", e);
+            return new StackBlur();
+        }
+    }
+
+    private void fillPool(Report report, ArrayList<SizeScaler.Size> sizes, float scaleFactor, Bitmap.Config config) {
+        SizeScaler sizeScaler = new SizeScaler(scaleFactor);
+        long poolSize = BitmapPool.getSize();
+        // Obtained all at once, so the same size isn't handed out twice
+        ArrayList<Bitmap> bitmaps = new ArrayList<>(sizes.size());
+        for (SizeScaler.Size size : sizes) {
+            if (sizeScaler.isZeroSized(size.width, size.height)) {
+                continue;
+            }
+            SizeScaler.Size scaled = sizeScaler.scaleToGrid(size);
+            bitmaps.add(BitmapPool.obtain(scaled.width, scaled.height, config));
+        }
+        for (Bitmap bitmap : bitmaps) {
+            BitmapPool.release(bitmap);
+        }
+        report.pooledBitmaps = bitmaps.size();
+        report.pooledBytes = Math.max(0, BitmapPool.getSize() - poolSize);
+    }
+}
@@ -0,0 +1,66 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Quality presets for {@link BlurView#setupWith(BlurTarget, BlurQuality)}, trading the blur precision
+ * and the refresh rate for the frame time. Use {@link BlurCalibration} to pick one for the device.
+ * <p>
+ * The scale factor, update rate and precision apply on all API levels. The blur radius is scaled with the
+ * scale factor, so every preset blurs the content by the same amount.
+ * On API 31+ the blur itself is done by RenderEffect and is cheap on any device.
+ */
+public enum BlurQuality {
+    /**
+     * For low-end devices: a coarse snapshot, refreshed at most 20 times per second,
+     * blurred with the adaptive downsampling
+     */
+    LOW(8f, 20f, true, true),
+    /**
+     * A slightly coarser snapshot than {@link #HIGH}, refreshed at most 30 times per second
+     */
+    BALANCED(6f, 30f, true, false),
+    /**
+     * The default setup: {@link BlurController#DEFAULT_SCALE_FACTOR}, refreshed on every frame in full precision
+     */
+    HIGH(BlurController.DEFAULT_SCALE_FACTOR, 0f, false, false);
+
+    final float scaleFactor;
+    // 0 for every frame
+    final float maxFps;
+    final boolean reducedPrecision;
+    final boolean adaptiveDownsampling;
+
+    BlurQuality(float scaleFactor, float maxFps, boolean reducedPrecision, boolean adaptiveDownsampling) {
+        this.scaleFactor = scaleFactor;
+        this.maxFps = maxFps;
+        this.reducedPrecision = reducedPrecision;
+        this.adaptiveDownsampling = adaptiveDownsampling;
+    }
+
+    @NonNull
+    BlurUpdatePolicy getUpdatePolicy() {
+        return maxFps > 0 ? BlurUpdatePolicy.maxFps(maxFps) : BlurUpdatePolicy.everyFrame();
+    }
+
+    /**
+     * @param blurRadius the radius with {@link BlurController#DEFAULT_SCALE_FACTOR}
+     * @return the radius in the pixels of this preset's snapshot, blurring the same area of the content
+     */
+    float scaleRadius(float blurRadius) {
+        return blurRadius * BlurController.DEFAULT_SCALE_FACTOR / scaleFactor;
+    }
+
+    /**
+     * Applies everything except the scale factor, which is passed to the controller on setup
+     *
+     * @param blurRadius the radius with {@link BlurController#DEFAULT_SCALE_FACTOR}
+     */
+    @NonNull
+    BlurViewFacade apply(@NonNull BlurViewFacade facade, float blurRadius) {
+        return facade.setBlurRadius(scaleRadius(blurRadius))
+                .setBlurUpdatePolicy(getUpdatePolicy())
+                .setReducedPrecision(reducedPrecision)
+                .setAdaptiveDownsampling(adaptiveDownsampling);
+    }
+}
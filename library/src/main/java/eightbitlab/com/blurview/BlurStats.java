@@ -0,0 +1,95 @@
+package eightbitlab.com.blurview;
+
+/**
+ * Counters of the blur updates of a single BlurView.
+ * Updated on the main thread, so read them there as well.
+ */
+public final class BlurStats {
+    long updatesPerformed;
+    long updatesSkipped;
+    long asyncLatencyFrames;
+    long scrollUpdates;
+    long snapshotRecordings;
+    long snapshotReuses;
+    long bufferBytes;
+
+    /**
+     * @return how many times the snapshot was captured and blurred
+     */
+    public long getUpdatesPerformed() {
+        return updatesPerformed;
+    }
+
+    /**
+     * @return how many times capturing and blurring was skipped,
+     * because the content under the BlurView didn't change or an async blur was still in flight
+     */
+    public long getUpdatesSkipped() {
+        return updatesSkipped;
+    }
+
+    /**
+     * @return in the async blur mode, how many frames passed between capturing the currently displayed
+     * snapshot and putting its blurred version on the screen. 0 in the default synchronous mode.
+     * @see BlurViewFacade#setBlurExecutor(java.util.concurrent.Executor)
+     */
+    public long getAsyncLatencyFrames() {
+        return asyncLatencyFrames;
+    }
+
+    /**
+     * @return how many of the performed updates only captured and blurred the strip exposed by scrolling,
+     * see {@link BlurViewFacade#setScrollingContent(android.view.View)}
+     */
+    public long getScrollUpdates() {
+        return scrollUpdates;
+    }
+
+    /**
+     * @return on API 31+, how many times the snapshot display list was recorded
+     */
+    public long getSnapshotRecordings() {
+        return snapshotRecordings;
+    }
+
+    /**
+     * @return on API 31+, how many times the existing snapshot display list was drawn again,
+     * because the BlurTarget didn't redraw since it was recorded
+     */
+    public long getSnapshotReuses() {
+        return snapshotReuses;
+    }
+
+    /**
+     * @return how much memory the bitmaps currently held by the BlurView take.
+     * Doesn't include the unused bitmaps in the {@link BitmapPool} and the {@link BlurCache}.
+     */
+    public long getBufferBytes() {
+        return bufferBytes;
+    }
+
+    /**
+     * Resets the counters. {@link #getBufferBytes()} isn't a counter, so it's kept.
+     */
+    public void reset() {
+        updatesPerformed = 0;
+        updatesSkipped = 0;
+        asyncLatencyFrames = 0;
+        scrollUpdates = 0;
+        snapshotRecordings = 0;
+        snapshotReuses = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BlurStats{" +
+                "updatesPerformed=" + updatesPerformed +
+                ", updatesSkipped=" + updatesSkipped +
+                ", asyncLatencyFrames=" + asyncLatencyFrames +
+                ", scrollUpdates=" + scrollUpdates +
+                ", snapshotRecordings=" + snapshotRecordings +
+                ", snapshotReuses=" + snapshotReuses +
+                ", bufferBytes=" + bufferBytes +
+                '}';
+    }
+}
@@ -3,24 +3,47 @@ package eightbitlab.com.blurview;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.RecordingCanvas;
+import android.graphics.Rect;
 import android.graphics.RenderNode;
 import android.os.Build;
 import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.widget.FrameLayout;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
+import java.util.ArrayList;
+
 /**
  * A FrameLayout that records a snapshot of its children on a RenderNode.
  * This snapshot is used by the BlurView to apply blur effect.
+ * <p>
+ * It also tracks the regions invalidated by its children, so the BlurViews can skip
+ * capturing and blurring a snapshot when nothing changed under them.
  */
 public class BlurTarget extends FrameLayout {
     // Need both RenderNode (API 29) and RenderEffect (API 31) to be available for a full hardware rendering pipeline
     static final boolean canUseHardwareRendering = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S;
 
+    // Large enough to cover any BlurView, small enough to not overflow in Rect.width()
+    private static final int UNBOUNDED = Integer.MAX_VALUE / 4;
+
     RenderNode renderNode;
+    // Incremented every time the children are drawn, so the BlurViews know when the content might have changed
+    int drawGeneration;
+    // Incremented on child invalidations, layout changes and display list rebuilds.
+    // Unlike drawGeneration, drawing into a software canvas (like for a screenshot) doesn't change it.
+    int contentGeneration;
+
+    // Each BlurView accumulates the dirty region since its own last capture
+    private final ArrayList<Rect> dirtyTrackers = new ArrayList<>();
+    private final Rect descendantRect = new Rect();
+    // Software snapshots shared by the BlurViews blurring this target, one per scale factor
+    final ArrayList<SharedSnapshot> sharedSnapshots = new ArrayList<>();
 
     {
         if (canUseHardwareRendering) {
@@ -47,6 +70,15 @@ public class BlurTarget extends FrameLayout {
 
     @Override
     protected void dispatchDraw(@NonNull Canvas canvas) {
+        if (!(canvas instanceof BlurViewCanvas)) {
+            // Our own display list is being rebuilt, which can happen without any child invalidation
+            // (invalidate() on the BlurTarget itself, children added or removed, software rendering).
+            markAllDirty();
+            drawGeneration++;
+            if (canvas.isHardwareAccelerated()) {
+                contentGeneration++;
+            }
+        }
         if (canUseHardwareRendering && canvas.isHardwareAccelerated()) {
             renderNode.setPosition(0, 0, getWidth(), getHeight());
             RecordingCanvas recordingCanvas = renderNode.beginRecording();
@@ -57,4 +89,98 @@ public class BlurTarget extends FrameLayout {
             super.dispatchDraw(canvas);
         }
     }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        if (changed) {
+            markAllDirty();
+            contentGeneration++;
+        }
+    }
+
+    // Software rendering and the hardware path before API 26 report the exact dirty rect here
+    @SuppressWarnings("deprecation")
+    @Override
+    public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+        // location is the position of the child, dirty is in the child's coordinates
+        int offsetX = location[0] - getScrollX();
+        int offsetY = location[1] - getScrollY();
+        markDirty(dirty.left + offsetX, dirty.top + offsetY, dirty.right + offsetX, dirty.bottom + offsetY);
+        contentGeneration++;
+        return super.invalidateChildInParent(location, dirty);
+    }
+
+    // The hardware path on API 26+ doesn't report the rect, only the invalidated View
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    @Override
+    public void onDescendantInvalidated(@NonNull View child, @NonNull View target) {
+        markDescendantDirty(target);
+        contentGeneration++;
+        super.onDescendantInvalidated(child, target);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    private void markDescendantDirty(View target) {
+        // The target might have been invalidated because its translation, scale, etc. changed,
+        // so its old position is dirty as well. Marking the closest clipping parent covers both positions.
+        ViewParent parent = target.getParent();
+        while (parent instanceof ViewGroup && parent != this && !((ViewGroup) parent).getClipChildren()) {
+            parent = parent.getParent();
+        }
+        if (!(parent instanceof ViewGroup) || parent == this) {
+            markAllDirty();
+            return;
+        }
+
+        ViewGroup clippingParent = (ViewGroup) parent;
+        // offsetDescendantRectToMyCoords ignores transformations, so a transformed ancestor
+        // makes the mapped rect unreliable
+        for (ViewParent p = clippingParent; p != this; p = p.getParent()) {
+            if (!(p instanceof View) || !((View) p).getMatrix().isIdentity()) {
+                markAllDirty();
+                return;
+            }
+        }
+
+        descendantRect.set(0, 0, clippingParent.getWidth(), clippingParent.getHeight());
+        try {
+            offsetDescendantRectToMyCoords(clippingParent, descendantRect);
+        } catch (IllegalArgumentException e) {
+            // Not a descendant anymore, could be in the middle of a detach
+            markAllDirty();
+            return;
+        }
+        markDirty(descendantRect.left, descendantRect.top, descendantRect.right, descendantRect.bottom);
+    }
+
+    private void markDirty(int left, int top, int right, int bottom) {
+        for (int i = 0; i < dirtyTrackers.size(); i++) {
+            dirtyTrackers.get(i).union(left, top, right, bottom);
+        }
+    }
+
+    private void markAllDirty() {
+        markDirty(-UNBOUNDED, -UNBOUNDED, UNBOUNDED, UNBOUNDED);
+    }
+
+    /**
+     * Starts accumulating the regions invalidated by the children into the given Rect,
+     * in the coordinates of this BlurTarget. The owner clears the Rect once it captured a new snapshot.
+     * The tracker starts fully dirty.
+     */
+    void addDirtyTracker(@NonNull Rect tracker) {
+        tracker.set(-UNBOUNDED, -UNBOUNDED, UNBOUNDED, UNBOUNDED);
+        dirtyTrackers.add(tracker);
+    }
+
+    void removeDirtyTracker(@NonNull Rect tracker) {
+        // Rect.equals compares the values, not the instance
+        for (int i = 0; i < dirtyTrackers.size(); i++) {
+            if (dirtyTrackers.get(i) == tracker) {
+                dirtyTrackers.remove(i);
+                return;
+            }
+        }
+    }
 }
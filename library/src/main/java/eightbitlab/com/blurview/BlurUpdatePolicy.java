@@ -0,0 +1,113 @@
+package eightbitlab.com.blurview;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Decides how often the blurred content of a BlurView is refreshed.
+ * <p>
+ * Size changes, blur radius changes and {@link BlurViewFacade#requestBlurUpdate()} refresh the blur
+ * regardless of the policy.
+ *
+ * @see BlurViewFacade#setBlurUpdatePolicy(BlurUpdatePolicy)
+ */
+public final class BlurUpdatePolicy {
+    private static final int EVERY_FRAME = 0;
+    private static final int MAX_FPS = 1;
+    private static final int ON_MOVE_ONLY = 2;
+    private static final int MANUAL = 3;
+
+    // Frame times are in whole milliseconds, so a 30 FPS cap on a 60 Hz display sees 33 and 34 ms intervals
+    private static final long FRAME_TIME_TOLERANCE_MS = 2;
+
+    private static final BlurUpdatePolicy everyFrame = new BlurUpdatePolicy(EVERY_FRAME, 0);
+    private static final BlurUpdatePolicy onMoveOnly = new BlurUpdatePolicy(ON_MOVE_ONLY, 0);
+    private static final BlurUpdatePolicy manual = new BlurUpdatePolicy(MANUAL, 0);
+
+    private final int mode;
+    private final long minIntervalMs;
+
+    private BlurUpdatePolicy(int mode, long minIntervalMs) {
+        this.mode = mode;
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    /**
+     * Refreshes the blur on every frame where the content under the BlurView might have changed. The default.
+     */
+    @NonNull
+    public static BlurUpdatePolicy everyFrame() {
+        return everyFrame;
+    }
+
+    /**
+     * Refreshes the blur at most {@code fps} times per second, while the app keeps rendering at the display rate.
+     * A skipped change is picked up once the interval has passed, even if nothing else is drawn by then.
+     *
+     * @param fps maximum blur refresh rate, for example 20 or 30
+     */
+    @NonNull
+    public static BlurUpdatePolicy maxFps(float fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("fps must be positive, got " + fps);
+        }
+        return new BlurUpdatePolicy(MAX_FPS, (long) (1000 / fps));
+    }
+
+    /**
+     * Refreshes the blur only when the BlurView has moved relative to its root, ignoring content changes.
+     */
+    @NonNull
+    public static BlurUpdatePolicy onMoveOnly() {
+        return onMoveOnly;
+    }
+
+    /**
+     * Refreshes the blur only on {@link BlurViewFacade#requestBlurUpdate()}.
+     */
+    @NonNull
+    public static BlurUpdatePolicy manual() {
+        return manual;
+    }
+
+    /**
+     * @param moved     true if the BlurView has moved since the last update
+     * @param elapsedMs Choreographer frame time passed since the last update
+     */
+    boolean allowsUpdate(boolean moved, long elapsedMs) {
+        switch (mode) {
+            case MAX_FPS:
+                return elapsedMs + FRAME_TIME_TOLERANCE_MS >= minIntervalMs;
+            case ON_MOVE_ONLY:
+                return moved;
+            case MANUAL:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return in how many milliseconds a skipped update becomes allowed, or -1 if it never does by itself
+     */
+    long getDeferredUpdateDelay(long elapsedMs) {
+        if (mode != MAX_FPS) {
+            return -1;
+        }
+        return Math.max(0, minIntervalMs - elapsedMs);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        switch (mode) {
+            case MAX_FPS:
+                return "BlurUpdatePolicy{maxFps, minIntervalMs=" + minIntervalMs + '}';
+            case ON_MOVE_ONLY:
+                return "BlurUpdatePolicy{onMoveOnly}";
+            case MANUAL:
+                return "BlurUpdatePolicy{manual}";
+            default:
+                return "BlurUpdatePolicy{everyFrame}";
+        }
+    }
+}
@@ -13,9 +13,12 @@ import android.widget.FrameLayout;
 
 import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.eightbitlab.blurview.R;
 
+import java.util.concurrent.Future;
+
 /**
  * FrameLayout that blurs its underlying content.
  * Can have children and draw them over blurred background.
@@ -67,6 +70,9 @@ public class BlurView extends FrameLayout {
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         blurController.setBlurAutoUpdate(false);
+        // A BlurView in a back stack would keep its buffers otherwise. They are recreated before the next draw.
+        blurController.releaseBuffers();
+        MemoryTrimmer.unregister(this);
     }
 
     @Override
@@ -77,6 +83,7 @@ public class BlurView extends FrameLayout {
         } else {
             blurController.setBlurAutoUpdate(this.blurAutoUpdate);
         }
+        MemoryTrimmer.register(this);
     }
 
     /**
@@ -85,7 +92,7 @@ public class BlurView extends FrameLayout {
      * @param scaleFactor a scale factor to downscale the view snapshot before blurring.
      *                    Helps achieving stronger blur and potentially better performance at the expense of blur precision.
      *                    The blur radius is essentially the radius * scaleFactor.
-     * @param applyNoise  optional blue noise texture over the blurred content to make it look more natural. True by default.
+     * @param applyNoise  optional noise over the blurred content to make it look more natural. True by default.
      * @return {@link BlurView} to setup needed params.
      */
     public BlurViewFacade setupWith(@NonNull BlurTarget target, BlurAlgorithm algorithm, float scaleFactor, boolean applyNoise) {
@@ -104,10 +111,11 @@ public class BlurView extends FrameLayout {
      * @param rootView    the root to start blur from.
      *                    BlurAlgorithm is automatically picked based on the API version.
      *                    It uses RenderEffect on API 31+, and RenderScriptBlur on older versions.
+     *                    If RenderScript can't be created, {@link StackBlur} is used instead.
      * @param scaleFactor a scale factor to downscale the view snapshot before blurring.
      *                    Helps achieving stronger blur and potentially better performance at the expense of blur precision.
      *                    The blur radius is essentially the radius * scaleFactor.
-     * @param applyNoise  optional blue noise texture over the blurred content to make it look more natural. True by default.
+     * @param applyNoise  optional noise over the blurred content to make it look more natural. True by default.
      * @return {@link BlurView} to setup needed params.
      */
     public BlurViewFacade setupWith(@NonNull BlurTarget rootView, float scaleFactor, boolean applyNoise) {
@@ -116,17 +124,73 @@ public class BlurView extends FrameLayout {
             // Ignores the blur algorithm, always uses RenderNodeBlurController and RenderEffect
             algorithm = null;
         } else {
-            algorithm = new RenderScriptBlur(getContext());
+            algorithm = createDefaultAlgorithm();
         }
         return setupWith(rootView, algorithm, scaleFactor, applyNoise);
     }
 
+    /**
+     * Sets up the blur with the {@link BlurController#DEFAULT_BLUR_RADIUS}, see {@link #setupWith(BlurTarget, BlurQuality, float)}
+     */
+    public BlurViewFacade setupWith(@NonNull BlurTarget rootView, @NonNull BlurQuality quality) {
+        return setupWith(rootView, quality, BlurController.DEFAULT_BLUR_RADIUS);
+    }
+
+    /**
+     * @param rootView   the root to start blur from.
+     * @param quality    the preset for the scale factor, update rate and precision,
+     *                   usually {@link BlurCalibration#getQuality()}.
+     *                   Below API 31 the algorithm picked by {@link BlurCalibration} is used, if the device was calibrated.
+     *                   Noise is applied by default.
+     * @param blurRadius the radius as with {@link BlurController#DEFAULT_SCALE_FACTOR}. It's scaled with the preset's
+     *                   scale factor, so all presets blur the same. {@link BlurViewFacade#setBlurRadius(float)}
+     *                   on the returned facade takes the radius in the pixels of the preset's snapshot.
+     * @return {@link BlurView} to setup needed params.
+     */
+    public BlurViewFacade setupWith(@NonNull BlurTarget rootView, @NonNull BlurQuality quality, float blurRadius) {
+        BlurAlgorithm algorithm = null;
+        if (!BlurTarget.canUseHardwareRendering) {
+            algorithm = BlurCalibration.createAlgorithm(getContext());
+            if (algorithm == null) {
+                algorithm = createDefaultAlgorithm();
+            }
+        }
+        return quality.apply(setupWith(rootView, algorithm, quality.scaleFactor, true), blurRadius);
+    }
+
+    @NonNull
+    private BlurAlgorithm createDefaultAlgorithm() {
+        try {
+            return new RenderScriptBlur(getContext());
+        } catch (RuntimeException e) {
+            // RenderScript context creation can fail on some devices and emulator images
+            Log.e("BlurView", "Can't create RenderScript, falling back to StackBlur", e);
+            return new StackBlur();
+        }
+    }
+
+    /**
+     * Does the first-use work of the blur on a background thread, so the first BlurView doesn't drop a frame.
+     * See {@link BlurPrewarm} for several sizes or a custom scale factor.
+     *
+     * @param width  expected BlurView width in pixels
+     * @param height expected BlurView height in pixels
+     * @return future of the report of what was warmed up
+     */
+    @NonNull
+    public static Future<BlurPrewarm.Report> prewarm(@NonNull Context context, int width, int height) {
+        return new BlurPrewarm(context)
+                .addViewSize(width, height)
+                .start();
+    }
+
     /**
      * @param rootView root to start blur from.
      *                 BlurAlgorithm is automatically picked based on the API version.
      *                 It uses RenderEffect on API 31+, and RenderScriptBlur on older versions.
+     *                 If RenderScript can't be created, {@link StackBlur} is used instead.
      *                 The {@link DEFAULT_SCALE_FACTOR} scale factor for view snapshot is used.
-     *                 Blue noise texture is applied by default.
+     *                 Noise is applied by default.
      * @return {@link BlurView} to setup needed params.
      */
     public BlurViewFacade setupWith(@NonNull BlurTarget rootView) {
@@ -165,6 +229,35 @@ public class BlurView extends FrameLayout {
         return blurController.setBlurEnabled(enabled);
     }
 
+    /**
+     * @see BlurViewFacade#setBlurUpdatePolicy(BlurUpdatePolicy)
+     */
+    public BlurViewFacade setBlurUpdatePolicy(@NonNull BlurUpdatePolicy policy) {
+        return blurController.setBlurUpdatePolicy(policy);
+    }
+
+    /**
+     * @see BlurViewFacade#requestBlurUpdate()
+     */
+    public BlurViewFacade requestBlurUpdate() {
+        return blurController.requestBlurUpdate();
+    }
+
+    /**
+     * @see BlurViewFacade#setBlurMetricsListener(BlurMetricsListener)
+     */
+    public BlurViewFacade setBlurMetricsListener(@Nullable BlurMetricsListener listener) {
+        return blurController.setBlurMetricsListener(listener);
+    }
+
+    /**
+     * @see BlurViewFacade#getStats()
+     */
+    @NonNull
+    public BlurStats getStats() {
+        return blurController.getStats();
+    }
+
     @Override
     public void setRotation(float rotation) {
         super.setRotation(rotation);
@@ -1,10 +1,14 @@
 package eightbitlab.com.blurview;
 
 import android.graphics.drawable.Drawable;
+import android.view.View;
 
 import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.concurrent.Executor;
+
 public interface BlurViewFacade {
 
     /**
@@ -45,4 +49,130 @@ public interface BlurViewFacade {
      * @return {@link BlurViewFacade}
      */
     BlurViewFacade setOverlayColor(@ColorInt int overlayColor);
+
+    /**
+     * Moves the blur off the main thread. Only affects API < 31, where the blur is done by a {@link BlurAlgorithm}.
+     * The snapshot is still captured on the main thread, then blurred on the executor into a back buffer,
+     * while the BlurView keeps drawing the last completed result.
+     * Snapshots captured while a blur is in flight are dropped, not queued.
+     * <p>
+     * The blurred content is displayed with a delay of at least one frame,
+     * see {@link BlurStats#getAsyncLatencyFrames()}.
+     *
+     * @param executor executor to blur on, or null to blur on the main thread (default)
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setBlurExecutor(@Nullable Executor executor);
+
+    /**
+     * Limits how often the blurred content is refreshed, for example to 30 times per second
+     * for a slowly changing background. Skipped refreshes are counted in {@link BlurStats#getUpdatesSkipped()}.
+     * <p>
+     * On API 31+ the RenderEffect blur follows the content of the BlurTarget on the RenderThread,
+     * and the BlurView position is updated on every frame, so there the policy only limits how often
+     * the snapshot is recorded again.
+     *
+     * @param policy update policy, {@link BlurUpdatePolicy#everyFrame()} by default
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setBlurUpdatePolicy(@NonNull BlurUpdatePolicy policy);
+
+    /**
+     * Composites the noise and the overlay color into the blurred content once per blur update,
+     * instead of drawing them over the whole BlurView on every draw. Reduces the overdraw of the BlurView from 3x to 1x.
+     * <p>
+     * On API < 31 the noise then has the resolution of the downscaled snapshot, so it looks coarser.
+     * On API 31+ they are chained to the blur RenderEffect.
+     *
+     * @param enabled true to enable, false by default
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setBakeOverlay(boolean enabled);
+
+    /**
+     * Only used if the noise was enabled in {@link BlurView#setupWith(BlurTarget, float, boolean)}
+     *
+     * @param intensity opacity of the gray noise over the blurred content, 0..0.5. 0.15 by default, 0 hides the noise
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setNoiseIntensity(float intensity);
+
+    /**
+     * When the frame clear drawable or the BlurTarget background is opaque, the snapshot and the blur
+     * use {@link android.graphics.Bitmap.Config#RGB_565} bitmaps, which halves their memory.
+     * Only the algorithms that return true from {@link BlurAlgorithm#supportsRgb565()} are affected.
+     * They still blur 32 bit pixels, so it saves memory rather than blur time.
+     * <p>
+     * Disable it if the reduced color precision causes visible banding in your content.
+     *
+     * @param enabled true by default
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setReducedPrecision(boolean enabled);
+
+    /**
+     * Hints that the content under the BlurView is a scrolling container, like a RecyclerView or a ScrollView.
+     * When only its content has scrolled since the previous update, the previous blurred content is shifted
+     * by the scroll distance, and only the newly exposed strip is captured and blurred.
+     * The cost of such update depends on the scroll distance instead of the BlurView size.
+     * <p>
+     * Used only on API < 31 in the synchronous mode, when the adaptive downsampling and
+     * {@link #setBakeOverlay(boolean)} are disabled. The whole content is still updated
+     * when the scroll stops, and periodically while scrolling.
+     *
+     * @param scrollingView the scrolling container, must be inside the BlurTarget. Null to disable
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setScrollingContent(@Nullable View scrollingView);
+
+    /**
+     * Enables the {@link BlurCache} for this BlurView. The key identifies the content under the BlurView,
+     * like the id of a screen or an image, and has to implement equals and hashCode.
+     * When a result blurred from the same content is in the cache, it's used instead of capturing and blurring again.
+     * <p>
+     * Change the key when the content changes. The content is treated as static while the key stays the same.
+     * Used only on API < 31 in the synchronous mode.
+     *
+     * @param contentKey key of the current content, null to not use the cache. Null by default.
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setBlurCacheKey(@Nullable Object contentKey);
+
+    /**
+     * Makes the cost of large blur radii about the same as of small ones. Only affects API < 31,
+     * RenderEffect already downscales the content depending on the radius.
+     * <p>
+     * The snapshot is halved a few times depending on the radius, the smallest level is blurred
+     * with a small radius and then upsampled back. This allows radii far beyond the RenderScript limit of 25,
+     * at the cost of a slightly softer result.
+     *
+     * @param enabled true to enable, false by default
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setAdaptiveDownsampling(boolean enabled);
+
+    /**
+     * Refreshes the blurred content on the next frame, regardless of the update policy.
+     *
+     * @return {@link BlurViewFacade}
+     * @see BlurUpdatePolicy#manual()
+     */
+    BlurViewFacade requestBlurUpdate();
+
+    /**
+     * Reports the capture, blur and draw time and the snapshot size of every blur update.
+     * The time is measured only while a listener is set.
+     * Regardless of the listener, the stages are wrapped in {@link android.os.Trace} sections
+     * named "BlurView update", "BlurView capture", "BlurView blur", "BlurView draw" and "BlurView record".
+     *
+     * @param listener listener called on the main thread, or null to stop reporting
+     * @return {@link BlurViewFacade}
+     */
+    BlurViewFacade setBlurMetricsListener(@Nullable BlurMetricsListener listener);
+
+    /**
+     * @return counters of performed and skipped blur updates of this BlurView
+     */
+    @NonNull
+    BlurStats getStats();
 }
@@ -0,0 +1,58 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Picks the {@link Bitmap.Config} of the snapshot and blur buffers.
+ * <p>
+ * When the blurred content can't have transparent pixels, {@link Bitmap.Config#RGB_565} looks almost the same
+ * after the blur, but takes half of the memory of {@link Bitmap.Config#ARGB_8888}, and drawing the snapshot
+ * and uploading the result are cheaper. StackBlur blurs the raw 16 bit pixels with 3 channels instead of 4,
+ * DualKawase unpacks them to 32 bits. RenderScript doesn't support it.
+ * <p>
+ * The pixels of the buffer outside of the target stay transparent in ARGB_8888, but would turn black in RGB_565.
+ */
+final class BufferConfig {
+
+    private BufferConfig() {
+    }
+
+    /**
+     * @param algorithm          the algorithm the buffer is blurred with
+     * @param reducedPrecision   false if the reduced precision mode was disabled by the user
+     * @param frameClearDrawable drawn in the beginning of each snapshot
+     * @param target             the View the snapshot is taken from
+     * @param area               the part of the target covered by the buffer, in the target coordinates
+     */
+    @NonNull
+    static Bitmap.Config choose(@NonNull BlurAlgorithm algorithm, boolean reducedPrecision,
+                                @Nullable Drawable frameClearDrawable, @NonNull View target, @NonNull Rect area) {
+        boolean inside = area.left >= 0 && area.top >= 0
+                && area.right <= target.getWidth() && area.bottom <= target.getHeight();
+        boolean opaque = isOpaque(frameClearDrawable) || isOpaque(target.getBackground());
+        return choose(algorithm, reducedPrecision, inside && opaque);
+    }
+
+    /**
+     * @param opaque whether the snapshot can't have transparent pixels
+     */
+    @NonNull
+    static Bitmap.Config choose(@NonNull BlurAlgorithm algorithm, boolean reducedPrecision, boolean opaque) {
+        if (reducedPrecision && opaque && algorithm.supportsRgb565()) {
+            return Bitmap.Config.RGB_565;
+        }
+        return algorithm.getSupportedBitmapConfig();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static boolean isOpaque(@Nullable Drawable drawable) {
+        return drawable != null && drawable.getOpacity() == PixelFormat.OPAQUE;
+    }
+}
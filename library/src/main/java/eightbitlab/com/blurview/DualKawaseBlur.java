@@ -0,0 +1,28 @@
+package eightbitlab.com.blurview;
+
+/**
+ * Pure Java Dual Kawase blur, processed on the CPU on a small pool of worker threads.
+ * Gives a Gaussian-like look with a fraction of the reads, and its cost barely grows with the radius.
+ * <p>
+ * The radius is mapped to the iteration count and the tap offset so the result looks close to
+ * {@link StackBlur} and {@link RenderScriptBlur} with the same radius. It isn't limited to a radius of 25.
+ */
+public class DualKawaseBlur extends KernelBlur {
+    private final DualKawaseKernel kernel = new DualKawaseKernel(StripeExecutor.getDefault());
+
+    @Override
+    void blurPixels(int[] pixels, int width, int height, float radius) {
+        kernel.blur(pixels, width, height, radius);
+    }
+
+    @Override
+    void blurPixels(short[] pixels, int width, int height, float radius) {
+        kernel.blur(pixels, width, height, radius);
+    }
+
+    @Override
+    public void releaseBuffers() {
+        super.releaseBuffers();
+        kernel.releaseBuffers();
+    }
+}
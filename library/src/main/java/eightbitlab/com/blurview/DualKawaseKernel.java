@@ -0,0 +1,321 @@
+package eightbitlab.com.blurview;
+
+/**
+ * Dual Kawase blur (Marius Bjorge, "Bandwidth-Efficient Rendering", SIGGRAPH 2015), working on packed 32 bit pixels.
+ * <p>
+ * The image is halved a few times with a 5 tap filter, then doubled back with an 8 tap filter.
+ * Every tap is a bilinear sample, so the filter covers a large area with few reads,
+ * and the cost barely grows with the radius because the extra iterations run on small levels.
+ * <p>
+ * Like {@link StackBlurKernel}, each of the 4 bytes of a pixel is processed independently,
+ * rows of every pass are split into stripes processed on the {@link StripeExecutor},
+ * and the level buffers are kept between calls.
+ * RGB_565 pixels are unpacked to a full size buffer first. Only the first and the last pass work on the full size,
+ * so the conversion is a small part of the blur.
+ * <p>
+ * Not thread safe, use a separate instance per thread.
+ */
+final class DualKawaseKernel implements StripeExecutor.StripeTask {
+    static final int MAX_ITERATIONS = 6;
+
+    // Offsets larger than this produce visible ringing, more iterations are used instead
+    private static final float MAX_OFFSET = 2f;
+    // Standard deviation of the result is about SIGMA_PER_OFFSET * offset * 2^iterations pixels
+    private static final float SIGMA_PER_OFFSET = 0.85f;
+    // Standard deviation of the StackBlur with the same radius is about radius / STACK_BLUR_SIGMA_DIVISOR
+    private static final float STACK_BLUR_SIGMA_DIVISOR = 2.4f;
+
+    // Splitting small levels between threads costs more than it saves
+    private static final int MIN_PARALLEL_PIXELS = 128 * 128;
+
+    private final StripeExecutor executor;
+
+    // levels[0] is the image being blurred, the rest are the halved levels
+    private final int[][] levels = new int[MAX_ITERATIONS + 1][];
+    private final int[] levelWidths = new int[MAX_ITERATIONS + 1];
+    private final int[] levelHeights = new int[MAX_ITERATIONS + 1];
+    // The unpacked RGB_565 pixels
+    private int[] unpacked = new int[0];
+
+    // The pass in progress
+    private int[] source;
+    private int sourceWidth;
+    private int sourceHeight;
+    private int[] destination;
+    private int destinationWidth;
+    private int destinationHeight;
+    private boolean downsample;
+    // Tap offset in 1/256 of a source pixel
+    private int offset;
+
+    DualKawaseKernel(StripeExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Blurs with the iteration count and the offset picked to look close to a {@link StackBlurKernel}
+     * of the same radius, so switching the algorithm doesn't change the look.
+     *
+     * @param radius blur radius in pixels
+     */
+    void blur(int[] pixels, int width, int height, float radius) {
+        int iterations = iterationsFor(radius);
+        blur(pixels, width, height, iterations, offsetFor(radius, iterations));
+    }
+
+    /**
+     * {@link #blur(int[], int, int, float)} for raw RGB_565 pixels
+     */
+    void blur(short[] pixels, int width, int height, float radius) {
+        int count = width * height;
+        if (unpacked.length < count) {
+            unpacked = new int[count];
+        }
+        Rgb565.unpack(pixels, unpacked, count);
+        blur(unpacked, width, height, radius);
+        Rgb565.pack(unpacked, pixels, count);
+    }
+
+    /**
+     * Drops the level and unpacking buffers, they are allocated again by the next blur
+     */
+    void releaseBuffers() {
+        for (int i = 1; i < levels.length; i++) {
+            levels[i] = null;
+        }
+        unpacked = new int[0];
+    }
+
+    /**
+     * @param pixels     packed pixels, blurred in place
+     * @param iterations how many times to halve the image, up to {@link #MAX_ITERATIONS}.
+     *                   Reduced if the smallest level would get smaller than 2 pixels.
+     * @param offset     distance of the taps from the center, in pixels of the level being sampled
+     */
+    void blur(int[] pixels, int width, int height, int iterations, float offset) {
+        iterations = Math.min(iterations, MAX_ITERATIONS);
+        while (iterations > 0 && (Math.min(width, height) >> iterations) < 2) {
+            iterations--;
+        }
+        if (iterations < 1 || offset <= 0) {
+            return;
+        }
+
+        levels[0] = pixels;
+        levelWidths[0] = width;
+        levelHeights[0] = height;
+        for (int i = 1; i <= iterations; i++) {
+            levelWidths[i] = (levelWidths[i - 1] + 1) / 2;
+            levelHeights[i] = (levelHeights[i - 1] + 1) / 2;
+            int size = levelWidths[i] * levelHeights[i];
+            if (levels[i] == null || levels[i].length < size) {
+                levels[i] = new int[size];
+            }
+        }
+
+        this.offset = Math.round(offset * 256);
+        try {
+            downsample = true;
+            for (int i = 1; i <= iterations; i++) {
+                runPass(i - 1, i);
+            }
+            downsample = false;
+            for (int i = iterations; i >= 1; i--) {
+                runPass(i, i - 1);
+            }
+        } finally {
+            levels[0] = null;
+            source = null;
+            destination = null;
+        }
+    }
+
+    static int iterationsFor(float radius) {
+        float sigma = radius / STACK_BLUR_SIGMA_DIVISOR;
+        int iterations = 1;
+        while (iterations < MAX_ITERATIONS && SIGMA_PER_OFFSET * MAX_OFFSET * (1 << iterations) < sigma) {
+            iterations++;
+        }
+        return iterations;
+    }
+
+    static float offsetFor(float radius, int iterations) {
+        float sigma = radius / STACK_BLUR_SIGMA_DIVISOR;
+        return sigma / (SIGMA_PER_OFFSET * (1 << iterations));
+    }
+
+    private void runPass(int from, int to) {
+        source = levels[from];
+        sourceWidth = levelWidths[from];
+        sourceHeight = levelHeights[from];
+        destination = levels[to];
+        destinationWidth = levelWidths[to];
+        destinationHeight = levelHeights[to];
+        if (destinationWidth * destinationHeight < MIN_PARALLEL_PIXELS) {
+            run(0, 1);
+        } else {
+            executor.execute(this);
+        }
+    }
+
+    @Override
+    public void run(int stripe, int stripeCount) {
+        int from = destinationHeight * stripe / stripeCount;
+        int to = destinationHeight * (stripe + 1) / stripeCount;
+        for (int y = from; y < to; y++) {
+            if (downsample) {
+                downsampleRow(y);
+            } else {
+                upsampleRow(y);
+            }
+        }
+    }
+
+    /**
+     * Center with the weight of 4 and 4 diagonal taps with the weight of 1
+     */
+    private void downsampleRow(int y) {
+        int[] source = this.source;
+        int width = sourceWidth;
+        int height = sourceHeight;
+        int offset = this.offset;
+        // The center of a destination pixel, in 1/256 of a source pixel
+        int centerY = y * 512 + 128;
+        int row = y * destinationWidth;
+        for (int x = 0; x < destinationWidth; x++) {
+            int centerX = x * 512 + 128;
+            int p = sample(source, width, height, centerX, centerY);
+            int sum0 = (p & 0xff) * 4;
+            int sum1 = ((p >>> 8) & 0xff) * 4;
+            int sum2 = ((p >>> 16) & 0xff) * 4;
+            int sum3 = (p >>> 24) * 4;
+
+            p = sample(source, width, height, centerX - offset, centerY - offset);
+            sum0 += p & 0xff;
+            sum1 += (p >>> 8) & 0xff;
+            sum2 += (p >>> 16) & 0xff;
+            sum3 += p >>> 24;
+            p = sample(source, width, height, centerX + offset, centerY - offset);
+            sum0 += p & 0xff;
+            sum1 += (p >>> 8) & 0xff;
+            sum2 += (p >>> 16) & 0xff;
+            sum3 += p >>> 24;
+            p = sample(source, width, height, centerX - offset, centerY + offset);
+            sum0 += p & 0xff;
+            sum1 += (p >>> 8) & 0xff;
+            sum2 += (p >>> 16) & 0xff;
+            sum3 += p >>> 24;
+            p = sample(source, width, height, centerX + offset, centerY + offset);
+            sum0 += p & 0xff;
+            sum1 += (p >>> 8) & 0xff;
+            sum2 += (p >>> 16) & 0xff;
+            sum3 += p >>> 24;
+
+            destination[row + x] = (sum0 + 4) >>> 3
+                    | ((sum1 + 4) >>> 3) << 8
+                    | ((sum2 + 4) >>> 3) << 16
+                    | ((sum3 + 4) >>> 3) << 24;
+        }
+    }
+
+    /**
+     * 4 axis taps at the full offset with the weight of 1 and 4 diagonal taps at the half offset with the weight of 2
+     */
+    private void upsampleRow(int y) {
+        int[] source = this.source;
+        int width = sourceWidth;
+        int height = sourceHeight;
+        int full = offset;
+        int half = offset / 2;
+        // The center of a destination pixel, in 1/256 of a source pixel
+        int centerY = y * 128 - 64;
+        int row = y * destinationWidth;
+        for (int x = 0; x < destinationWidth; x++) {
+            int centerX = x * 128 - 64;
+            int p = sample(source, width, height, centerX - full, centerY);
+            int sum0 = p & 0xff;
+            int sum1 = (p >>> 8) & 0xff;
+            int sum2 = (p >>> 16) & 0xff;
+            int sum3 = p >>> 24;
+            p = sample(source, width, height, centerX + full, centerY);
+            sum0 += p & 0xff;
+            sum1 += (p >>> 8) & 0xff;
+            sum2 += (p >>> 16) & 0xff;
+            sum3 += p >>> 24;
+            p = sample(source, width, height, centerX, centerY - full);
+            sum0 += p & 0xff;
+            sum1 += (p >>> 8) & 0xff;
+            sum2 += (p >>> 16) & 0xff;
+            sum3 += p >>> 24;
+            p = sample(source, width, height, centerX, centerY + full);
+            sum0 += p & 0xff;
+            sum1 += (p >>> 8) & 0xff;
+            sum2 += (p >>> 16) & 0xff;
+            sum3 += p >>> 24;
+
+            p = sample(source, width, height, centerX - half, centerY - half);
+            sum0 += (p & 0xff) * 2;
+            sum1 += ((p >>> 8) & 0xff) * 2;
+            sum2 += ((p >>> 16) & 0xff) * 2;
+            sum3 += (p >>> 24) * 2;
+            p = sample(source, width, height, centerX + half, centerY - half);
+            sum0 += (p & 0xff) * 2;
+            sum1 += ((p >>> 8) & 0xff) * 2;
+            sum2 += ((p >>> 16) & 0xff) * 2;
+            sum3 += (p >>> 24) * 2;
+            p = sample(source, width, height, centerX - half, centerY + half);
+            sum0 += (p & 0xff) * 2;
+            sum1 += ((p >>> 8) & 0xff) * 2;
+            sum2 += ((p >>> 16) & 0xff) * 2;
+            sum3 += (p >>> 24) * 2;
+            p = sample(source, width, height, centerX + half, centerY + half);
+            sum0 += (p & 0xff) * 2;
+            sum1 += ((p >>> 8) & 0xff) * 2;
+            sum2 += ((p >>> 16) & 0xff) * 2;
+            sum3 += (p >>> 24) * 2;
+
+            destination[row + x] = (sum0 + 6) / 12
+                    | ((sum1 + 6) / 12) << 8
+                    | ((sum2 + 6) / 12) << 16
+                    | ((sum3 + 6) / 12) << 24;
+        }
+    }
+
+    /**
+     * Bilinear sample with the edge pixels repeated outside of the image.
+     *
+     * @param x horizontal position in 1/256 of a pixel, 0 is the center of the first pixel
+     * @param y vertical position in 1/256 of a pixel
+     */
+    static int sample(int[] pixels, int width, int height, int x, int y) {
+        int fx = x & 0xff;
+        int fy = y & 0xff;
+        int x0 = clamp(x >> 8, width - 1);
+        int x1 = clamp((x >> 8) + 1, width - 1);
+        int row0 = clamp(y >> 8, height - 1) * width;
+        int row1 = clamp((y >> 8) + 1, height - 1) * width;
+
+        int p00 = pixels[row0 + x0];
+        int p10 = pixels[row0 + x1];
+        int p01 = pixels[row1 + x0];
+        int p11 = pixels[row1 + x1];
+        int w00 = (256 - fx) * (256 - fy);
+        int w10 = fx * (256 - fy);
+        int w01 = (256 - fx) * fy;
+        int w11 = fx * fy;
+
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int channel = ((p00 >>> shift) & 0xff) * w00
+                    + ((p10 >>> shift) & 0xff) * w10
+                    + ((p01 >>> shift) & 0xff) * w01
+                    + ((p11 >>> shift) & 0xff) * w11;
+            result |= ((channel + 32768) >>> 16) << shift;
+        }
+        return result;
+    }
+
+    private static int clamp(int value, int max) {
+        return value < 0 ? 0 : Math.min(value, max);
+    }
+}
@@ -0,0 +1,82 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Base of the pure Java blurs. Copies the bitmap into a reusable pixel buffer,
+ * blurs it with {@link #blurPixels} and copies the result back, see {@link BitmapPixels}.
+ * RGB_565 bitmaps are copied and blurred as 16 bit pixels.
+ */
+abstract class KernelBlur implements BlurAlgorithm {
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final BitmapPixels.Buffer buffer = new BitmapPixels.Buffer();
+    // Forwards to the subclass, blurPixels stays package-private
+    private final BitmapPixels.Kernel kernel = new BitmapPixels.Kernel() {
+        @Override
+        public void blurPixels(int[] pixels, int width, int height, float radius) {
+            KernelBlur.this.blurPixels(pixels, width, height, radius);
+        }
+
+        @Override
+        public void blurPixels(short[] pixels, int width, int height, float radius) {
+            KernelBlur.this.blurPixels(pixels, width, height, radius);
+        }
+    };
+
+    /**
+     * Blurs premultiplied ARGB pixels in place
+     */
+    abstract void blurPixels(int[] pixels, int width, int height, float radius);
+
+    /**
+     * Blurs raw RGB_565 pixels in place
+     */
+    abstract void blurPixels(short[] pixels, int width, int height, float radius);
+
+    /**
+     * @param bitmap     bitmap to blur, must be mutable and {@link Bitmap.Config#ARGB_8888} or {@link Bitmap.Config#RGB_565}
+     * @param blurRadius blur radius in pixels
+     * @return the same blurred bitmap
+     */
+    @Override
+    public Bitmap blur(@NonNull Bitmap bitmap, float blurRadius) {
+        BitmapPixels.blur(bitmap, blurRadius, buffer, kernel);
+        return bitmap;
+    }
+
+    @Override
+    public void destroy() {
+        releaseBuffers();
+    }
+
+    @Override
+    public void releaseBuffers() {
+        buffer.release();
+    }
+
+    @Override
+    public boolean canModifyBitmap() {
+        return true;
+    }
+
+    @NonNull
+    @Override
+    public Bitmap.Config getSupportedBitmapConfig() {
+        return Bitmap.Config.ARGB_8888;
+    }
+
+    @Override
+    public boolean supportsRgb565() {
+        return true;
+    }
+
+    @Override
+    public void render(@NonNull Canvas canvas, @NonNull Bitmap bitmap) {
+        canvas.drawBitmap(bitmap, 0f, 0f, paint);
+    }
+}
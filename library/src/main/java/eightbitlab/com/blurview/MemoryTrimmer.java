@@ -0,0 +1,95 @@
+package eightbitlab.com.blurview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Frees the blur buffers when the system runs low on memory, while at least one BlurView is attached.
+ * <p>
+ * Trims the {@link BitmapPool}, the {@link BlurCache} and the {@link BlurBackends}, and once the UI is hidden,
+ * releases the buffers of all attached BlurViews. They are recreated on the next update when the UI is shown again.
+ */
+final class MemoryTrimmer implements ComponentCallbacks2 {
+    private static final MemoryTrimmer instance = new MemoryTrimmer();
+
+    private final ArrayList<BlurView> blurViews = new ArrayList<>();
+    private Context registeredContext;
+
+    private MemoryTrimmer() {
+    }
+
+    static void register(@NonNull BlurView blurView) {
+        Context context = blurView.getContext().getApplicationContext();
+        if (context == null || instance.blurViews.contains(blurView)) {
+            // Edit mode and tests might not have an application
+            return;
+        }
+        if (instance.blurViews.isEmpty()) {
+            context.registerComponentCallbacks(instance);
+            instance.registeredContext = context;
+        }
+        instance.blurViews.add(blurView);
+    }
+
+    static void unregister(@NonNull BlurView blurView) {
+        if (!instance.blurViews.remove(blurView) || !instance.blurViews.isEmpty()) {
+            return;
+        }
+        instance.registeredContext.unregisterComponentCallbacks(instance);
+        instance.registeredContext = null;
+    }
+
+    /**
+     * The trim ladder shared by the caches: nothing below {@link #TRIM_MEMORY_RUNNING_LOW}, half of the cache
+     * while the app runs low on memory, and everything once the app is in the background
+     * or the memory is critically low.
+     *
+     * @param size current size of the cache
+     * @return the size the cache has to be trimmed to
+     */
+    // The running levels are deprecated since API 34, which stops sending them, but older versions still do
+    @SuppressWarnings("deprecation")
+    static long trimmedSize(int level, long size) {
+        if (clearsEverything(level)) {
+            return 0;
+        }
+        return level >= TRIM_MEMORY_RUNNING_LOW ? size / 2 : size;
+    }
+
+    /**
+     * @return true if everything that can be recreated later has to be freed at this level
+     */
+    @SuppressWarnings("deprecation")
+    static boolean clearsEverything(int level) {
+        return level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // Nothing is on the screen, so the released bitmaps go to the pool and are trimmed below
+            for (int i = 0; i < blurViews.size(); i++) {
+                blurViews.get(i).blurController.releaseBuffers();
+            }
+        }
+        BitmapPool.onTrimMemory(level);
+        BlurCache.onTrimMemory(level);
+        BlurBackends.onTrimMemory(level);
+    }
+
+    // Deprecated along with the running levels, but still called before API 34
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
@@ -2,11 +2,17 @@ package eightbitlab.com.blurview;
 
 import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
+import android.view.View;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.concurrent.Executor;
+
 // Used in edit mode and in case if no BlurController was set
 public class NoOpController implements BlurController {
+    private final BlurStats stats = new BlurStats();
+
     @Override
     public boolean draw(Canvas canvas) {
         return true;
@@ -20,6 +26,10 @@ public class NoOpController implements BlurController {
     public void destroy() {
     }
 
+    @Override
+    public void releaseBuffers() {
+    }
+
     @Override
     public BlurViewFacade setBlurRadius(float radius) {
         return this;
@@ -44,4 +54,60 @@ public class NoOpController implements BlurController {
     public BlurViewFacade setBlurAutoUpdate(boolean enabled) {
         return this;
     }
+
+    @Override
+    public BlurViewFacade setBlurExecutor(@Nullable Executor executor) {
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurUpdatePolicy(@NonNull BlurUpdatePolicy policy) {
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurCacheKey(@Nullable Object contentKey) {
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setScrollingContent(@Nullable View scrollingView) {
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setReducedPrecision(boolean enabled) {
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBakeOverlay(boolean enabled) {
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setNoiseIntensity(float intensity) {
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setAdaptiveDownsampling(boolean enabled) {
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade requestBlurUpdate() {
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurMetricsListener(@Nullable BlurMetricsListener listener) {
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public BlurStats getStats() {
+        return stats;
+    }
 }
@@ -1,43 +1,96 @@
 package eightbitlab.com.blurview;
 
-import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Shader;
 
-import androidx.annotation.NonNull;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 
 class Noise {
-    private static Paint noisePaint;
+    private static final Object lock = new Object();
+    private static Shader shader;
+    // One Paint per intensity, keyed by the alpha step. They share the tile.
+    private static final HashMap<Integer, Paint> paints = new HashMap<>();
 
-    static void apply(Canvas canvas, Context context, int width, int height) {
-        initPaint(context);
-        canvas.drawRect(0, 0, width, height, noisePaint);
+    static void apply(Canvas canvas, float intensity, int width, int height) {
+        if (intensity > 0f) {
+            canvas.drawRect(0, 0, width, height, getPaint(intensity));
+        }
+    }
+
+    /**
+     * @return the repeating alpha-only noise texture. Has to be drawn through {@link #createColorFilter(float)}
+     * with {@link PorterDuff.Mode#SRC_ATOP}
+     */
+    static Shader getShader() {
+        synchronized (lock) {
+            if (shader == null) {
+                shader = new BitmapShader(createTile(), Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
+            }
+            return shader;
+        }
+    }
+
+    /**
+     * The tile stores the gray value of the noise in the alpha channel.
+     * Moves it to the color and draws every pixel with the same opacity,
+     * so the grain is the same over any content.
+     */
+    static ColorFilter createColorFilter(float intensity) {
+        return new ColorMatrixColorFilter(new ColorMatrix(new float[]{
+                0, 0, 0, 1, 0,
+                0, 0, 0, 1, 0,
+                0, 0, 0, 1, 0,
+                0, 0, 0, 0, alphaStep(intensity)
+        }));
     }
 
-    private static void initPaint(Context context) {
-        if (noisePaint == null) {
-            Bitmap alphaBitmap = getNoiseBitmap(context);
-            noisePaint = new Paint();
-            noisePaint.setAntiAlias(true);
-            noisePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_ATOP));
-            noisePaint.setShader(new BitmapShader(alphaBitmap, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
+    /**
+     * @return true if the tile was generated, false if it was ready already
+     */
+    static boolean prewarm(float intensity) {
+        boolean generated;
+        synchronized (lock) {
+            generated = shader == null;
         }
+        getPaint(intensity);
+        return generated;
+    }
+
+    // Used on the main thread and by BlurPrewarm
+    private static Paint getPaint(float intensity) {
+        int key = alphaStep(intensity);
+        Shader tile = getShader();
+        synchronized (lock) {
+            Paint paint = paints.get(key);
+            if (paint == null) {
+                paint = new Paint();
+                paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_ATOP));
+                paint.setShader(tile);
+                paint.setColorFilter(createColorFilter(intensity));
+                paints.put(key, paint);
+            }
+            return paint;
+        }
+    }
+
+    private static Bitmap createTile() {
+        int size = NoiseGenerator.DEFAULT_SIZE;
+        // A quarter of the ARGB_8888 memory, the color filter makes it gray
+        Bitmap tile = Bitmap.createBitmap(size, size, Bitmap.Config.ALPHA_8);
+        tile.copyPixelsFromBuffer(ByteBuffer.wrap(NoiseGenerator.generate(size)));
+        return tile;
     }
 
-    @NonNull
-    private static Bitmap getNoiseBitmap(Context context) {
-        Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), com.eightbitlab.blurview.R.drawable.blue_noise);
-        Bitmap alphaBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(alphaBitmap);
-        Paint paint = new Paint();
-        paint.setAlpha(38); // 15% opacity
-        canvas.drawBitmap(bitmap, 0, 0, paint);
-        return alphaBitmap;
+    private static int alphaStep(float intensity) {
+        return Math.round(Math.max(0f, Math.min(intensity, 0.5f)) * 255);
     }
 }
@@ -0,0 +1,70 @@
+package eightbitlab.com.blurview;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates the noise tile drawn over the blurred content, deterministically and without any Android classes.
+ * <p>
+ * The tile is white noise with its low frequencies removed, so like blue noise it doesn't form visible clumps.
+ * The neighbours wrap around the edges, so the repeated tile has no seams. The values are then spread evenly
+ * over 0..255, so the grain is as light as it is dark around the mid gray.
+ */
+final class NoiseGenerator {
+    static final int DEFAULT_SIZE = 64;
+    static final float DEFAULT_INTENSITY = 0.15f;
+
+    private static final long SEED = 0x5EED;
+
+    private NoiseGenerator() {
+    }
+
+    /**
+     * @param size width and height of the tile in pixels
+     * @return size * size gray values, row by row
+     */
+    static byte[] generate(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive, was " + size);
+        }
+        int count = size * size;
+        float[] white = new float[count];
+        Random random = new Random(SEED);
+        for (int i = 0; i < count; i++) {
+            white[i] = random.nextFloat();
+        }
+        // Each pixel minus the mean of its 8 neighbours, wrapping around the edges
+        long[] ranked = new long[count];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float neighbours = 0f;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        if (dx != 0 || dy != 0) {
+                            neighbours += white[wrap(y + dy, size) * size + wrap(x + dx, size)];
+                        }
+                    }
+                }
+                int index = y * size + x;
+                float value = white[index] - neighbours / 8f;
+                // Sortable bits of the value in the high half, the pixel index in the low one
+                ranked[index] = ((long) sortable(value) << 32) | index;
+            }
+        }
+        Arrays.sort(ranked);
+        byte[] gray = new byte[count];
+        for (int rank = 0; rank < count; rank++) {
+            gray[(int) ranked[rank]] = (byte) ((long) rank * 256 / count);
+        }
+        return gray;
+    }
+
+    private static int wrap(int coordinate, int size) {
+        return (coordinate + size) % size;
+    }
+
+    // Orders like the float, -2..2 here
+    private static int sortable(float value) {
+        return Math.round((value + 2f) * (1 << 28));
+    }
+}
@@ -3,16 +3,26 @@ package eightbitlab.com.blurview;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Point;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.Trace;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
 
 import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
 /**
  * Blur Controller that handles all blur logic for the attached View.
  * It honors View size changes, View animation and Visibility changes.
@@ -23,26 +33,140 @@ import androidx.annotation.Nullable;
  * It uses {@link ViewTreeObserver.OnPreDrawListener} to detect when
  * blur should be updated.
  * <p>
+ * If the root is a {@link BlurTarget}, the update is skipped when neither the content under the attached View
+ * nor its position has changed since the previous snapshot.
+ * <p>
+ * Optionally the blur can run on a background Executor, see {@link #setBlurExecutor(Executor)}.
+ * <p>
+ * BlurViews blurring the same {@link BlurTarget} share its snapshot, see {@link SharedSnapshot}.
  */
 public final class PreDrawBlurController implements BlurController {
 
     @ColorInt
     public static final int TRANSPARENT = 0;
+    // The buffer area is snapped to this many rows, so it doesn't change its size on every scrolled pixel
+    private static final int BUFFER_ROW_STEP = 16;
+    // Limits how long small changes in the scrolling content can go unnoticed, see setScrollingContent
+    private static final int MAX_SCROLL_UPDATES = 8;
+    // How long the scroll has to stop before the shifted content is replaced by a full update
+    private static final long SCROLL_SETTLE_MS = 100;
 
     private float blurRadius = DEFAULT_BLUR_RADIUS;
 
     private final BlurAlgorithm blurAlgorithm;
-    private final float scaleFactor;
+    private final PyramidBlur pyramidBlur;
+    private final SizeScaler sizeScaler;
     private final boolean applyNoise;
     private BlurViewCanvas internalCanvas;
+    // The blurred bitmap drawn on the screen
     private Bitmap internalBitmap;
+    // The bitmap internalCanvas currently draws to
+    private Bitmap captureBitmap;
+    // Size of a buffer covering the whole BlurView, see SizeScaler.scaleToGrid
+    private int bitmapWidth;
+    private int bitmapHeight;
+    // Part of the whole-BlurView buffer that is actually captured and blurred, in its pixels.
+    // Only the visible part of the BlurView plus the blur radius around it.
+    private final Rect bufferArea = new Rect();
+    // bufferArea of the last capture
+    private final Rect capturedArea = new Rect();
+    // bufferArea of the internalBitmap and of the bitmap being blurred in async mode
+    private final Rect onScreenArea = new Rect();
+    private final Rect inFlightArea = new Rect();
+    private final Rect visibleRect = new Rect();
+    private Bitmap.Config bitmapConfig;
+    private boolean reducedPrecision = true;
+
+    // Async mode state, see setBlurExecutor
+    @Nullable
+    private Executor blurExecutor;
+    @Nullable
+    private AsyncBlurPipeline asyncPipeline;
+    // Snapshot buffer handed to the pipeline while internalBitmap is on the screen
+    @Nullable
+    private Bitmap backBitmap;
+    private long frameNumber;
+    private long inFlightFrameNumber;
+    // A freshly allocated on-screen bitmap has to be blurred on the main thread to not show an empty frame
+    private boolean onScreenBitmapBlurred;
+
+    // See setBlurCacheKey
+    @Nullable
+    private Object blurCacheKey;
+    // Reused for the lookups. On a miss it's kept to put the result being blurred into the BlurCache.
+    private final BlurCache.Key cacheKey = new BlurCache.Key();
+    private boolean cacheResultPending;
+    private final Rect cacheArea = new Rect();
+    // bufferArea in the rootView coordinates, for picking the bitmap config
+    private final Rect configArea = new Rect();
+
+    // Scroll update state, see setScrollingContent
+    @Nullable
+    private ScrollTracker scrollTracker;
+    private int scrollUpdates;
+    // Frame time when the last scroll update is considered settled
+    private long scrollSettleTime;
+    private boolean settleInvalidatePosted;
+    private final Runnable settleInvalidate = new Runnable() {
+        @Override
+        public void run() {
+            settleInvalidatePosted = false;
+            blurView.invalidate();
+        }
+    };
+    private final Point scrollDelta = new Point();
+    private final Rect scrollBounds = new Rect();
+    // Part of the buffer captured and blurred on a scroll update, and the part of it copied to the buffer
+    private final Rect stripArea = new Rect();
+    private final Rect stripSource = new Rect();
+    private final Rect stripDestination = new Rect();
+    private final Paint shiftPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Canvas shiftCanvas = new Canvas();
+    @Nullable
+    private Bitmap shiftBitmap;
+    @Nullable
+    private BlurViewCanvas stripCanvas;
+    @Nullable
+    private Bitmap stripBitmap;
 
     @SuppressWarnings("WeakerAccess")
     final View blurView;
     private int overlayColor;
+    // Noise and overlay color are drawn into the blurred bitmap, see setBakeOverlay
+    private boolean bakeOverlay;
+    private float noiseIntensity = NoiseGenerator.DEFAULT_INTENSITY;
+    @Nullable
+    private Canvas bakeCanvas;
     private final ViewGroup rootView;
     private final int[] rootLocation = new int[2];
     private final int[] blurViewLocation = new int[2];
+    // BlurView position in the rootView coordinates
+    private int left;
+    private int top;
+    // The buffer pixels form a grid aligned to the rootView, this is the grid pixel of the buffer pixel (0, 0).
+    // It's the same grid the SharedSnapshot uses, so the snapshot is copied to the buffer 1:1.
+    private int gridLeft;
+    private int gridTop;
+    // Scratch state of computeSnapshotArea, it must not change the state of the update
+    private final int[] snapshotRootLocation = new int[2];
+    private final int[] snapshotLocation = new int[2];
+    private final Rect snapshotVisibleRect = new Rect();
+    private final Rect snapshotArea = new Rect();
+
+    // Region of the rootView invalidated since the last snapshot, only tracked if rootView is a BlurTarget
+    private final Rect dirtyRegion = new Rect();
+    @Nullable
+    private final SharedSnapshot sharedSnapshot;
+    private int lastLeft;
+    private int lastTop;
+    private boolean forceUpdate = true;
+    private final UpdateScheduler updateScheduler;
+    private final BlurStats stats = new BlurStats();
+    @Nullable
+    private BlurMetricsListener metricsListener;
+    private final BlurFrameMetrics metrics = new BlurFrameMetrics();
+    // Accumulated between the metrics reports
+    private long drawTimeNanos;
 
     private final ViewTreeObserver.OnPreDrawListener drawListener = new ViewTreeObserver.OnPreDrawListener() {
         @Override
@@ -51,6 +175,7 @@ public final class PreDrawBlurController implements BlurController {
             // This relies on the HW accelerated bitmap drawing behavior in Android
             // If the bitmap was drawn on HW accelerated canvas, it holds a reference to it and on next
             // drawing pass the updated content of the bitmap will be rendered on the screen
+            frameNumber++;
             updateBlur();
             return true;
         }
@@ -69,7 +194,7 @@ public final class PreDrawBlurController implements BlurController {
      * @param algorithm   sets the blur algorithm
      * @param scaleFactor a scale factor to downscale the view snapshot before blurring.
      *                    Helps achieving stronger blur and potentially better performance at the expense of blur precision.
-     * @param applyNoise  optional blue noise texture over the blurred content to make it look more natural. True by default.
+     * @param applyNoise  optional noise over the blurred content to make it look more natural. True by default.
      */
     public PreDrawBlurController(@NonNull View blurView,
                                  @NonNull ViewGroup rootView,
@@ -80,9 +205,19 @@ public final class PreDrawBlurController implements BlurController {
         this.rootView = rootView;
         this.blurView = blurView;
         this.overlayColor = overlayColor;
-        this.blurAlgorithm = algorithm;
-        this.scaleFactor = scaleFactor;
+        this.pyramidBlur = new PyramidBlur(algorithm);
+        this.blurAlgorithm = pyramidBlur;
+        this.sizeScaler = new SizeScaler(scaleFactor);
         this.applyNoise = applyNoise;
+        this.updateScheduler = new UpdateScheduler(blurView);
+        // Overwrites the previous content including its alpha
+        shiftPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        if (rootView instanceof BlurTarget) {
+            ((BlurTarget) rootView).addDirtyTracker(dirtyRegion);
+            sharedSnapshot = SharedSnapshot.acquire((BlurTarget) rootView, scaleFactor, this);
+        } else {
+            sharedSnapshot = null;
+        }
 
         int measuredWidth = blurView.getMeasuredWidth();
         int measuredHeight = blurView.getMeasuredHeight();
@@ -93,7 +228,6 @@ public final class PreDrawBlurController implements BlurController {
     @SuppressWarnings("WeakerAccess")
     void init(int measuredWidth, int measuredHeight) {
         setBlurAutoUpdate(true);
-        SizeScaler sizeScaler = new SizeScaler(scaleFactor);
         if (sizeScaler.isZeroSized(measuredWidth, measuredHeight)) {
             // Will be initialized later when the View reports a size change
             blurView.setWillNotDraw(true);
@@ -101,10 +235,23 @@ public final class PreDrawBlurController implements BlurController {
         }
 
         blurView.setWillNotDraw(false);
-        SizeScaler.Size bitmapSize = sizeScaler.scale(measuredWidth, measuredHeight);
-        internalBitmap = Bitmap.createBitmap(bitmapSize.width, bitmapSize.height, blurAlgorithm.getSupportedBitmapConfig());
-        internalCanvas = new BlurViewCanvas(internalBitmap);
+        SizeScaler.Size bitmapSize = sizeScaler.scaleToGrid(measuredWidth, measuredHeight);
+        bitmapWidth = bitmapSize.width;
+        bitmapHeight = bitmapSize.height;
+        bufferArea.set(0, 0, bitmapWidth, bitmapHeight);
+        // In async mode the old bitmap is stretched over the whole new size
+        onScreenArea.set(bufferArea);
+        updateBlurViewPosition();
+        bitmapConfig = chooseBitmapConfig();
+        // In async mode the old blurred bitmap stays on the screen, scaled to the new size, until the new one is ready
+        boolean keepOnScreenBitmap = asyncPipeline != null && internalBitmap != null;
+        if (!keepOnScreenBitmap && !fitsBuffer(internalBitmap)) {
+            internalBitmap = resizeBitmap(internalBitmap);
+            onScreenBitmapBlurred = false;
+            bindCanvas(internalBitmap);
+        }
         initialized = true;
+        forceUpdate = true;
         // Usually it's not needed, because `onPreDraw` updates the blur anyway.
         // But it handles cases when the PreDraw listener is attached to a different Window, for example
         // when the BlurView is in a Dialog window, but the root is in the Activity.
@@ -112,20 +259,166 @@ public final class PreDrawBlurController implements BlurController {
         updateBlur();
     }
 
+    private Bitmap.Config chooseBitmapConfig() {
+        getBufferAreaInRoot(configArea);
+        return BufferConfig.choose(blurAlgorithm, reducedPrecision, frameClearDrawable, rootView, configArea);
+    }
+
+    private boolean fitsBuffer(@Nullable Bitmap bitmap) {
+        return bitmap != null && bitmap.getWidth() == bufferArea.width() && bitmap.getHeight() == bufferArea.height()
+                && bitmap.getConfig() == bitmapConfig;
+    }
+
+    private void bindCanvas(Bitmap bitmap) {
+        if (internalCanvas == null) {
+            internalCanvas = new BlurViewCanvas(bitmap);
+        } else if (captureBitmap != bitmap
+                // Resized in place by the BitmapPool
+                || internalCanvas.getWidth() != bitmap.getWidth()
+                || internalCanvas.getHeight() != bitmap.getHeight()) {
+            internalCanvas.setBitmap(bitmap);
+        }
+        captureBitmap = bitmap;
+    }
+
+    private Bitmap resizeBitmap(@Nullable Bitmap bitmap) {
+        if (!blurAlgorithm.canModifyBitmap()) {
+            // The algorithm might keep the bitmaps it returns, so they can't go through the pool
+            return Bitmap.createBitmap(bufferArea.width(), bufferArea.height(), bitmapConfig);
+        }
+        return BitmapPool.resize(bitmap, bufferArea.width(), bufferArea.height(), bitmapConfig);
+    }
+
+    private void releaseBitmap(@Nullable Bitmap bitmap) {
+        if (blurAlgorithm.canModifyBitmap()) {
+            BitmapPool.release(bitmap);
+        }
+    }
+
     @SuppressWarnings("WeakerAccess")
     void updateBlur() {
         if (!blurEnabled || !initialized) {
             return;
         }
+        Trace.beginSection("BlurView update");
+        try {
+            metrics.reset();
+            boolean updated = captureAndBlur();
+            if (metricsListener != null) {
+                reportMetrics(!updated);
+            }
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * @return false if the update was skipped
+     */
+    private boolean captureAndBlur() {
+        if (asyncPipeline != null) {
+            swapCompletedBitmap();
+        }
 
+        updateBlurViewPosition();
+        if (scrollUpdates > 0 && !postScrollSettle()) {
+            // The shifted content is an approximation, see setScrollingContent
+            forceUpdate = true;
+        }
+        if (!updateBufferArea() || !needsUpdate()) {
+            // Nothing to update when the BlurView is completely clipped out
+            stats.updatesSkipped++;
+            return false;
+        }
+        boolean moved = left != lastLeft || top != lastTop;
+        if (!forceUpdate && !updateScheduler.shouldUpdate(moved)) {
+            // The dirty region keeps accumulating until the policy allows the next update
+            stats.updatesSkipped++;
+            return false;
+        }
+        if (asyncPipeline != null && asyncPipeline.isBusy()) {
+            // Dropping this frame instead of queueing it. The update flags are kept,
+            // so the latest content is captured once the worker is done.
+            stats.updatesSkipped++;
+            return false;
+        }
+        // The target background or the BlurView position might have changed since the last update
+        bitmapConfig = chooseBitmapConfig();
+        boolean scrolled = !forceUpdate && !moved && computeScrollStrip();
+        stats.updatesPerformed++;
+        updateScheduler.onUpdated();
+        forceUpdate = false;
+        lastLeft = left;
+        lastTop = top;
+        capturedArea.set(bufferArea);
+        if (rootView instanceof BlurTarget) {
+            // Cleared before capturing, so invalidations happening during the capture trigger the next update
+            dirtyRegion.setEmpty();
+        }
+        if (scrollTracker != null) {
+            scrollTracker.reset();
+        }
+        boolean async = blurExecutor != null && onScreenBitmapBlurred;
+        if (blurCacheKey != null && !async && restoreFromCache()) {
+            scrollUpdates = 0;
+            return true;
+        }
+        if (scrolled) {
+            // Only a complete blur is cached
+            cacheResultPending = false;
+            stats.scrollUpdates++;
+            scrollUpdates++;
+            scrollSettleTime = AnimationUtils.currentAnimationTimeMillis() + SCROLL_SETTLE_MS;
+            postScrollSettle();
+            shiftAndBlurStrip();
+            return true;
+        }
+        scrollUpdates = 0;
+
+        Bitmap snapshot = async ? obtainBackBitmap() : obtainOnScreenBitmap();
+        long captureStart = now();
+        Trace.beginSection("BlurView capture");
+        try {
+            capture(snapshot);
+        } finally {
+            Trace.endSection();
+        }
+        metrics.captureTimeNanos = now() - captureStart;
+
+        if (async) {
+            inFlightFrameNumber = frameNumber;
+            inFlightArea.set(bufferArea);
+            asyncPipeline.submit(blurExecutor, snapshot, blurRadius);
+        } else {
+            long blurStart = now();
+            Trace.beginSection("BlurView blur");
+            try {
+                blurAndSave();
+            } finally {
+                Trace.endSection();
+            }
+            metrics.blurTimeNanos = now() - blurStart;
+        }
+        return true;
+    }
+
+    private void capture(Bitmap snapshot) {
+        bindCanvas(snapshot);
         if (frameClearDrawable == null) {
-            internalBitmap.eraseColor(Color.TRANSPARENT);
+            snapshot.eraseColor(Color.TRANSPARENT);
         } else {
             frameClearDrawable.draw(internalCanvas);
         }
 
+        if (sharedSnapshot != null) {
+            getGridArea(snapshotArea);
+            // Captures the target only if no other BlurView did it for this frame yet
+            sharedSnapshot.update(snapshotArea);
+            sharedSnapshot.draw(internalCanvas, snapshotArea.left, snapshotArea.top);
+            return;
+        }
         internalCanvas.save();
-        setupInternalCanvasMatrix();
+        setupCanvasMatrix(internalCanvas, 0, 0);
         try {
             rootView.draw(internalCanvas);
         } catch (Exception e) {
@@ -133,34 +426,373 @@ public final class PreDrawBlurController implements BlurController {
             Log.e("BlurView", "Error during snapshot capturing", e);
         }
         internalCanvas.restore();
+    }
 
-        blurAndSave();
+    /**
+     * Looks up the blurred result in the {@link BlurCache}. On a miss the key is kept to cache the new result.
+     *
+     * @return true if the on-screen bitmap got the cached result
+     */
+    private boolean restoreFromCache() {
+        getBufferAreaInRoot(cacheArea);
+        cacheKey.set(blurCacheKey, cacheArea, bufferArea.width(), bufferArea.height(),
+                blurRadius, sizeScaler.getScaleFactor(), bitmapConfig,
+                pyramidBlur.getAlgorithm().getClass(), pyramidBlur.isEnabled());
+        Bitmap bitmap = obtainOnScreenBitmap();
+        if (!BlurCache.get(cacheKey, bitmap)) {
+            cacheResultPending = true;
+            return false;
+        }
+        cacheResultPending = false;
+        onScreenBitmapBlurred = true;
+        bakeOverlay(bitmap);
+        return true;
     }
 
     /**
-     * Set up matrix to draw starting from blurView's position
+     * Checks whether only the scrolling content has moved under the BlurView since the last update,
+     * and if so, which strip of the buffer has to be captured and blurred again.
+     *
+     * @return true if the update can shift the blurred content and blur only the exposed strip
+     */
+    private boolean computeScrollStrip() {
+        if (scrollTracker == null || scrollUpdates >= MAX_SCROLL_UPDATES
+                || blurExecutor != null || bakeOverlay || pyramidBlur.isEnabled()
+                || !blurAlgorithm.canModifyBitmap() || !(rootView instanceof BlurTarget)
+                || !onScreenBitmapBlurred || !bufferArea.equals(capturedArea) || !fitsBuffer(internalBitmap)) {
+            return false;
+        }
+        // Scrolls in both directions at once would need two strips, a full update is simpler
+        if (!scrollTracker.computeDelta(scrollDelta) || (scrollDelta.x == 0) == (scrollDelta.y == 0)) {
+            return false;
+        }
+        // Everything else under the BlurView has to stay the same. The buffer overhangs the BlurView
+        // by up to a grid pixel and the stride alignment, that part isn't drawn and doesn't have to be scrolled.
+        scrollTracker.getBounds(rootLocation, scrollBounds);
+        stripArea.set(visibleRect);
+        stripArea.offset(left, top);
+        if (!scrollBounds.contains(stripArea) || (!dirtyRegion.isEmpty() && !scrollBounds.contains(dirtyRegion))) {
+            return false;
+        }
+
+        boolean vertical = scrollDelta.y != 0;
+        float shift = (vertical ? scrollDelta.y : scrollDelta.x) / sizeScaler.getScaleFactor();
+        if (!computeStrip(shift, vertical, bufferArea.width(), bufferArea.height(), blurRadius, stripArea, stripSource)) {
+            return false;
+        }
+        stripDestination.set(stripSource);
+        stripDestination.offset(stripArea.left, stripArea.top);
+        return true;
+    }
+
+    /**
+     * @param shift       how far the content moved along the scroll axis, in buffer pixels
+     * @param width       buffer width
+     * @param height      buffer height
+     * @param stripArea   receives the part of the buffer to capture and blur again
+     * @param stripSource receives the part of the blurred strip that is put over the shifted content, in the strip coordinates
+     * @return false if blurring the strip wouldn't be much cheaper than blurring everything
+     */
+    static boolean computeStrip(float shift, boolean vertical, int width, int height, float blurRadius,
+                                @NonNull Rect stripArea, @NonNull Rect stripSource) {
+        // The in-tree algorithms don't spread a pixel further than 2 radii.
+        // The strip edge facing the old content is blurred as an image edge, so this many pixels of it are thrown away.
+        int halo = (int) Math.ceil(blurRadius * 2) + 2;
+        int exposed = (int) Math.ceil(Math.abs(shift));
+        // Rounded, so the strip bitmap doesn't change its size with every scroll speed
+        int stripSize = (exposed + BUFFER_ROW_STEP - 1) / BUFFER_ROW_STEP * BUFFER_ROW_STEP + 2 * halo;
+        if (stripSize * 2 > (vertical ? height : width)) {
+            return false;
+        }
+
+        if (vertical) {
+            stripArea.set(0, shift < 0 ? height - stripSize : 0, width, shift < 0 ? height : stripSize);
+            stripSource.set(0, shift < 0 ? halo : 0, width, shift < 0 ? stripSize : stripSize - halo);
+        } else {
+            stripArea.set(shift < 0 ? width - stripSize : 0, 0, shift < 0 ? width : stripSize, height);
+            stripSource.set(shift < 0 ? halo : 0, 0, shift < 0 ? stripSize : stripSize - halo, height);
+        }
+        return true;
+    }
+
+    /**
+     * Invalidates the blurView when the scroll updates settle, unless such invalidation is already posted.
+     * Without it, nothing would trigger the full update after the scroll stops.
+     * The frame time can lag behind the posted invalidation, which then posts another one.
+     *
+     * @return false if the scroll updates have already settled
+     */
+    private boolean postScrollSettle() {
+        long frameTime = AnimationUtils.currentAnimationTimeMillis();
+        if (frameTime >= scrollSettleTime) {
+            return false;
+        }
+        if (!settleInvalidatePosted) {
+            settleInvalidatePosted = true;
+            blurView.postDelayed(settleInvalidate, scrollSettleTime - frameTime);
+        }
+        return true;
+    }
+
+    /**
+     * Draws the previous blurred content shifted by the scroll distance, then captures and blurs
+     * only the strip computed by {@link #computeScrollStrip()} and puts it over the exposed part.
+     */
+    private void shiftAndBlurStrip() {
+        long captureStart = now();
+        Trace.beginSection("BlurView capture");
+        try {
+            if (shiftBitmap == null || shiftBitmap.getWidth() != internalBitmap.getWidth()
+                    || shiftBitmap.getHeight() != internalBitmap.getHeight() || shiftBitmap.getConfig() != bitmapConfig) {
+                shiftBitmap = BitmapPool.resize(shiftBitmap, internalBitmap.getWidth(), internalBitmap.getHeight(), bitmapConfig);
+            }
+            shiftCanvas.setBitmap(shiftBitmap);
+            // Bilinear filtering barely affects the already blurred content, but keeps the fractional scroll distance
+            shiftCanvas.drawBitmap(internalBitmap,
+                    scrollDelta.x / sizeScaler.getScaleFactor(),
+                    scrollDelta.y / sizeScaler.getScaleFactor(),
+                    shiftPaint);
+
+            if (stripBitmap == null || stripBitmap.getWidth() != stripArea.width()
+                    || stripBitmap.getHeight() != stripArea.height() || stripBitmap.getConfig() != bitmapConfig) {
+                stripBitmap = BitmapPool.resize(stripBitmap, stripArea.width(), stripArea.height(), bitmapConfig);
+                if (stripCanvas == null) {
+                    stripCanvas = new BlurViewCanvas(stripBitmap);
+                } else {
+                    stripCanvas.setBitmap(stripBitmap);
+                }
+            }
+            stripCanvas.save();
+            stripCanvas.translate(-stripArea.left, -stripArea.top);
+            if (frameClearDrawable == null) {
+                stripBitmap.eraseColor(Color.TRANSPARENT);
+            } else {
+                frameClearDrawable.draw(stripCanvas);
+            }
+            stripCanvas.restore();
+            stripCanvas.save();
+            setupCanvasMatrix(stripCanvas, stripArea.left, stripArea.top);
+            try {
+                rootView.draw(stripCanvas);
+            } catch (Exception e) {
+                // Can potentially fail on rendering Hardware Bitmaps or something like that
+                Log.e("BlurView", "Error during snapshot capturing", e);
+            }
+            stripCanvas.restore();
+        } finally {
+            Trace.endSection();
+        }
+        metrics.captureTimeNanos = now() - captureStart;
+
+        long blurStart = now();
+        Trace.beginSection("BlurView blur");
+        try {
+            blurAlgorithm.blur(stripBitmap, blurRadius);
+            shiftCanvas.drawBitmap(stripBitmap, stripSource, stripDestination, shiftPaint);
+            shiftCanvas.setBitmap(null);
+        } finally {
+            Trace.endSection();
+        }
+        metrics.blurTimeNanos = now() - blurStart;
+
+        Bitmap previous = internalBitmap;
+        internalBitmap = shiftBitmap;
+        shiftBitmap = previous;
+        // The bitmap instance has changed, so the BlurView has to record a new display list
+        blurView.invalidate();
+    }
+
+    /**
+     * @return the current time if a metrics listener is set. Not measuring the time otherwise.
+     */
+    private long now() {
+        return metricsListener != null ? System.nanoTime() : 0;
+    }
+
+    private void reportMetrics(boolean skipped) {
+        metrics.updateSkipped = skipped;
+        metrics.drawTimeNanos = drawTimeNanos;
+        drawTimeNanos = 0;
+        if (internalBitmap != null) {
+            metrics.bitmapWidth = internalBitmap.getWidth();
+            metrics.bitmapHeight = internalBitmap.getHeight();
+            metrics.bitmapBytes = internalBitmap.getByteCount();
+        }
+        metricsListener.onFrameMetrics(metrics);
+    }
+
+    private Bitmap obtainOnScreenBitmap() {
+        if (!fitsBuffer(internalBitmap)) {
+            internalBitmap = resizeBitmap(internalBitmap);
+        }
+        onScreenArea.set(bufferArea);
+        if (blurExecutor == null && backBitmap != null) {
+            // Not needed in the sync mode anymore
+            releaseBitmap(backBitmap);
+            backBitmap = null;
+        }
+        return internalBitmap;
+    }
+
+    private Bitmap obtainBackBitmap() {
+        if (!fitsBuffer(backBitmap)) {
+            backBitmap = resizeBitmap(backBitmap);
+        }
+        return backBitmap;
+    }
+
+    /**
+     * Puts the bitmap blurred in the background on the screen, the previous one becomes the back buffer.
      */
-    private void setupInternalCanvasMatrix() {
+    private void swapCompletedBitmap() {
+        Bitmap completed = asyncPipeline.takeCompleted();
+        if (completed == null) {
+            return;
+        }
+        bakeOverlay(completed);
+        backBitmap = internalBitmap;
+        internalBitmap = completed;
+        onScreenArea.set(inFlightArea);
+        stats.asyncLatencyFrames = frameNumber - inFlightFrameNumber;
+        metrics.blurTimeNanos = asyncPipeline.getLastBlurTimeNanos();
+        // The bitmap instance has changed, so the BlurView has to record a new display list
+        blurView.invalidate();
+    }
+
+    private void updateBlurViewPosition() {
         rootView.getLocationOnScreen(rootLocation);
         blurView.getLocationOnScreen(blurViewLocation);
 
-        int left = blurViewLocation[0] - rootLocation[0];
-        int top = blurViewLocation[1] - rootLocation[1];
+        left = blurViewLocation[0] - rootLocation[0];
+        top = blurViewLocation[1] - rootLocation[1];
+        gridLeft = toGrid(left);
+        gridTop = toGrid(top);
+    }
 
-        // https://github.com/Dimezis/BlurView/issues/128
-        float scaleFactorH = (float) blurView.getHeight() / internalBitmap.getHeight();
-        float scaleFactorW = (float) blurView.getWidth() / internalBitmap.getWidth();
+    private int toGrid(int position) {
+        return (int) Math.floor(position / sizeScaler.getScaleFactor());
+    }
+
+    /**
+     * Computes the part of the buffer that has to be captured: the visible part of the blurView
+     * plus the blur radius around it, because those pixels affect the visible blurred content.
+     * The rest of the hierarchy is then rejected by the capture canvas clip.
+     *
+     * @return false if the blurView is completely clipped out by its parents or the window
+     */
+    private boolean updateBufferArea() {
+        if (!blurView.getLocalVisibleRect(visibleRect)) {
+            return false;
+        }
+        computeBufferArea(visibleRect, left, top, bufferArea);
+        return !bufferArea.isEmpty();
+    }
+
+    /**
+     * @param visible  the visible part of the blurView
+     * @param viewLeft the blurView position in the rootView coordinates
+     * @param viewTop  the blurView position in the rootView coordinates
+     * @param area     receives the part of the buffer to capture
+     */
+    private void computeBufferArea(Rect visible, int viewLeft, int viewTop, Rect area) {
+        float scaleFactor = sizeScaler.getScaleFactor();
+        // The buffer starts at the grid pixel containing the BlurView's top left corner
+        float originX = viewLeft - toGrid(viewLeft) * scaleFactor;
+        float originY = viewTop - toGrid(viewTop) * scaleFactor;
+        // The blur radius is in the buffer pixels
+        int halo = (int) Math.ceil(blurRadius);
+
+        // The full width is aligned to the stride requirement, so the edges have to be aligned too
+        int bufferLeft = sizeScaler.roundSizeDown(Math.max(0, (int) ((visible.left + originX) / scaleFactor) - halo));
+        int bufferRight = Math.min(bitmapWidth, sizeScaler.roundSize((int) Math.ceil((visible.right + originX) / scaleFactor) + halo));
+        int bufferTop = Math.max(0, (int) ((visible.top + originY) / scaleFactor) - halo);
+        bufferTop -= bufferTop % BUFFER_ROW_STEP;
+        int bufferBottom = (int) Math.ceil((visible.bottom + originY) / scaleFactor) + halo;
+        bufferBottom = Math.min(bitmapHeight, (bufferBottom + BUFFER_ROW_STEP - 1) / BUFFER_ROW_STEP * BUFFER_ROW_STEP);
+        area.set(bufferLeft, bufferTop, bufferRight, bufferBottom);
+    }
+
+    /**
+     * @return true if the content under the blurView (including the blur radius around it)
+     * could have changed since the last snapshot, or the blurView has moved.
+     */
+    boolean needsUpdate() {
+        if (forceUpdate || left != lastLeft || top != lastTop || !(rootView instanceof BlurTarget)) {
+            return true;
+        }
+        if (!bufferArea.equals(capturedArea)) {
+            // Scrolled into or out of the visible area
+            return true;
+        }
+        if (dirtyRegion.isEmpty()) {
+            return false;
+        }
+        // Pixels within the blur radius around the blurView affect its blurred content too
+        int halo = (int) Math.ceil(blurRadius * sizeScaler.getScaleFactor());
+        return dirtyRegion.intersects(
+                left - halo,
+                top - halo,
+                left + blurView.getWidth() + halo,
+                top + blurView.getHeight() + halo
+        );
+    }
+
+    /**
+     * Called by the {@link SharedSnapshot} to find out which part of the grid it has to capture for this blurView.
+     * Measures the blurView again without touching the state of its own update,
+     * which can run later in the same frame.
+     *
+     * @return false if this controller doesn't need a snapshot
+     */
+    boolean computeSnapshotArea(@NonNull Rect area) {
+        // Detached BlurViews keep their controllers, but don't draw
+        if (!blurEnabled || !initialized || blurView.getWindowToken() == null
+                || !blurView.getLocalVisibleRect(snapshotVisibleRect)) {
+            return false;
+        }
+        rootView.getLocationOnScreen(snapshotRootLocation);
+        blurView.getLocationOnScreen(snapshotLocation);
+        int viewLeft = snapshotLocation[0] - snapshotRootLocation[0];
+        int viewTop = snapshotLocation[1] - snapshotRootLocation[1];
+        computeBufferArea(snapshotVisibleRect, viewLeft, viewTop, area);
+        area.offset(toGrid(viewLeft), toGrid(viewTop));
+        return !area.isEmpty();
+    }
 
-        float scaledLeftPosition = -left / scaleFactorW;
-        float scaledTopPosition = -top / scaleFactorH;
+    /**
+     * @param area receives bufferArea in the grid pixels
+     */
+    private void getGridArea(@NonNull Rect area) {
+        area.set(bufferArea);
+        area.offset(gridLeft, gridTop);
+    }
+
+    private void getBufferAreaInRoot(@NonNull Rect area) {
+        float scaleFactor = sizeScaler.getScaleFactor();
+        getGridArea(area);
+        area.set((int) (area.left * scaleFactor),
+                (int) (area.top * scaleFactor),
+                (int) Math.ceil(area.right * scaleFactor),
+                (int) Math.ceil(area.bottom * scaleFactor));
+    }
 
-        internalCanvas.translate(scaledLeftPosition, scaledTopPosition);
-        internalCanvas.scale(1 / scaleFactorW, 1 / scaleFactorH);
+    /**
+     * Set up matrix to draw starting from blurView's position
+     *
+     * @param offsetX position of the canvas bitmap in the buffer
+     * @param offsetY position of the canvas bitmap in the buffer
+     */
+    private void setupCanvasMatrix(Canvas canvas, int offsetX, int offsetY) {
+        // https://github.com/Dimezis/BlurView/issues/128
+        float scaleFactor = sizeScaler.getScaleFactor();
+        canvas.translate(-gridLeft - bufferArea.left - offsetX, -gridTop - bufferArea.top - offsetY);
+        canvas.scale(1 / scaleFactor, 1 / scaleFactor);
     }
 
     @Override
     public boolean draw(Canvas canvas) {
-        if (!blurEnabled || !initialized) {
+        // The buffers are released while detached, and recreated by the next update
+        if (!blurEnabled || !initialized || internalBitmap == null) {
             return true;
         }
         // Not blurring itself or other BlurViews to not cause recursive draw calls
@@ -169,34 +801,75 @@ public final class PreDrawBlurController implements BlurController {
             return false;
         }
 
-        // https://github.com/Dimezis/BlurView/issues/128
-        float scaleFactorH = (float) blurView.getHeight() / internalBitmap.getHeight();
-        float scaleFactorW = (float) blurView.getWidth() / internalBitmap.getWidth();
-
-        canvas.save();
-        // Don't draw outside of the BlurView bounds if parent has clipChildren = false
-        canvas.clipRect(0f, 0f, blurView.getWidth(), blurView.getHeight());
-        canvas.save();
-        canvas.scale(scaleFactorW, scaleFactorH);
-        blurAlgorithm.render(canvas, internalBitmap);
-        // restore scale so we don't upscale the noise texture
-        canvas.restore();
-        if (applyNoise) {
-            Noise.apply(canvas, blurView.getContext(), blurView.getWidth(), blurView.getHeight());
-        }
-        if (overlayColor != TRANSPARENT) {
-            canvas.drawColor(overlayColor);
+        long drawStart = now();
+        Trace.beginSection("BlurView draw");
+        try {
+            // https://github.com/Dimezis/BlurView/issues/128
+            float scaleFactor = sizeScaler.getScaleFactor();
+
+            canvas.save();
+            // Don't draw outside of the BlurView bounds if parent has clipChildren = false
+            canvas.clipRect(0f, 0f, blurView.getWidth(), blurView.getHeight());
+            canvas.save();
+            // The buffer grid starts up to a buffer pixel before the BlurView
+            canvas.translate(gridLeft * scaleFactor - left, gridTop * scaleFactor - top);
+            canvas.scale(scaleFactor, scaleFactor);
+            canvas.translate(onScreenArea.left, onScreenArea.top);
+            // Stretches the previous bitmap in async mode, until the bitmap of the new size is blurred
+            canvas.scale((float) onScreenArea.width() / internalBitmap.getWidth(),
+                    (float) onScreenArea.height() / internalBitmap.getHeight());
+            blurAlgorithm.render(canvas, internalBitmap);
+            // restore scale so we don't upscale the noise texture
+            canvas.restore();
+            if (!bakeOverlay) {
+                if (applyNoise) {
+                    Noise.apply(canvas, noiseIntensity, blurView.getWidth(), blurView.getHeight());
+                }
+                if (overlayColor != TRANSPARENT) {
+                    canvas.drawColor(overlayColor);
+                }
+            }
+            // restore clip rect
+            canvas.restore();
+        } finally {
+            Trace.endSection();
         }
-        // restore clip rect
-        canvas.restore();
+        drawTimeNanos += now() - drawStart;
         return true;
     }
 
     private void blurAndSave() {
         internalBitmap = blurAlgorithm.blur(internalBitmap, blurRadius);
+        onScreenBitmapBlurred = true;
         if (!blurAlgorithm.canModifyBitmap()) {
-            internalCanvas.setBitmap(internalBitmap);
+            bindCanvas(internalBitmap);
+        }
+        if (cacheResultPending) {
+            // Before the overlay is baked, it's not a part of the key
+            BlurCache.put(cacheKey, internalBitmap);
+            cacheResultPending = false;
         }
+        bakeOverlay(internalBitmap);
+    }
+
+    /**
+     * Draws the noise and the overlay color into the freshly blurred bitmap, if enabled
+     */
+    private void bakeOverlay(Bitmap blurred) {
+        if (!bakeOverlay || (!applyNoise && overlayColor == TRANSPARENT)) {
+            return;
+        }
+        if (bakeCanvas == null) {
+            bakeCanvas = new Canvas();
+        }
+        bakeCanvas.setBitmap(blurred);
+        if (applyNoise) {
+            Noise.apply(bakeCanvas, noiseIntensity, blurred.getWidth(), blurred.getHeight());
+        }
+        if (overlayColor != TRANSPARENT) {
+            bakeCanvas.drawColor(overlayColor);
+        }
+        bakeCanvas.setBitmap(null);
     }
 
     @Override
@@ -210,25 +883,130 @@ public final class PreDrawBlurController implements BlurController {
     @Override
     public void destroy() {
         setBlurAutoUpdate(false);
-        blurAlgorithm.destroy();
+        if (rootView instanceof BlurTarget) {
+            ((BlurTarget) rootView).removeDirtyTracker(dirtyRegion);
+        }
+        if (sharedSnapshot != null) {
+            sharedSnapshot.release(this);
+        }
+        if (asyncPipeline != null) {
+            // The algorithm and the back bitmap might still be in use by the worker
+            boolean busy = asyncPipeline.isBusy();
+            asyncPipeline.destroy();
+            releaseBitmap(internalBitmap);
+            if (!busy) {
+                releaseBitmap(asyncPipeline.takeCompleted());
+                releaseBitmap(backBitmap);
+            }
+        } else {
+            blurAlgorithm.destroy();
+            releaseBitmap(backBitmap);
+            releaseBitmap(internalBitmap);
+        }
+        releaseScrollBitmaps();
+        if (internalCanvas != null) {
+            internalCanvas.setBitmap(null);
+        }
+        backBitmap = null;
+        internalBitmap = null;
+        captureBitmap = null;
         initialized = false;
     }
 
+    @Override
+    public void releaseBuffers() {
+        if (asyncPipeline != null && asyncPipeline.isBusy()) {
+            // The worker still uses the algorithm and the back bitmap, they are swapped in later
+            releaseBitmap(internalBitmap);
+        } else {
+            if (asyncPipeline != null) {
+                releaseBitmap(asyncPipeline.takeCompleted());
+            }
+            releaseBitmap(internalBitmap);
+            releaseBitmap(backBitmap);
+            backBitmap = null;
+            blurAlgorithm.releaseBuffers();
+        }
+        releaseScrollBitmaps();
+        if (internalCanvas != null) {
+            internalCanvas.setBitmap(null);
+        }
+        internalBitmap = null;
+        captureBitmap = null;
+        // Has to be blurred on the main thread again, to not show an empty frame
+        onScreenBitmapBlurred = false;
+        cacheResultPending = false;
+        forceUpdate = true;
+        if (sharedSnapshot != null) {
+            // After this controller dropped its buffers, so it doesn't count as a user of the snapshot
+            sharedSnapshot.releaseBitmap();
+        }
+    }
+
+    /**
+     * @return true if the buffers weren't released since the last update
+     */
+    boolean holdsBuffers() {
+        return internalBitmap != null;
+    }
+
+    private void releaseScrollBitmaps() {
+        if (stripCanvas != null) {
+            stripCanvas.setBitmap(null);
+        }
+        BitmapPool.release(shiftBitmap);
+        BitmapPool.release(stripBitmap);
+        shiftBitmap = null;
+        stripBitmap = null;
+    }
+
     @Override
     public BlurViewFacade setBlurRadius(float radius) {
-        this.blurRadius = radius;
+        if (this.blurRadius != radius) {
+            this.blurRadius = radius;
+            forceUpdate = true;
+        }
         return this;
     }
 
     @Override
     public BlurViewFacade setFrameClearDrawable(@Nullable Drawable frameClearDrawable) {
         this.frameClearDrawable = frameClearDrawable;
+        forceUpdate = true;
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurCacheKey(@Nullable Object contentKey) {
+        if (!Objects.equals(blurCacheKey, contentKey)) {
+            blurCacheKey = contentKey;
+            cacheResultPending = false;
+            forceUpdate = true;
+            blurView.invalidate();
+        }
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setScrollingContent(@Nullable View scrollingView) {
+        scrollTracker = scrollingView != null ? new ScrollTracker(scrollingView) : null;
+        scrollUpdates = 0;
+        forceUpdate = true;
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setReducedPrecision(boolean enabled) {
+        this.reducedPrecision = enabled;
+        forceUpdate = true;
+        blurView.invalidate();
         return this;
     }
 
     @Override
     public BlurViewFacade setBlurEnabled(boolean enabled) {
         this.blurEnabled = enabled;
+        forceUpdate = true;
         setBlurAutoUpdate(enabled);
         blurView.invalidate();
         return this;
@@ -251,8 +1029,81 @@ public final class PreDrawBlurController implements BlurController {
     public BlurViewFacade setOverlayColor(int overlayColor) {
         if (this.overlayColor != overlayColor) {
             this.overlayColor = overlayColor;
+            if (bakeOverlay) {
+                // The old color is in the blurred bitmap
+                forceUpdate = true;
+            }
+            blurView.invalidate();
+        }
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setNoiseIntensity(float intensity) {
+        if (this.noiseIntensity != intensity) {
+            this.noiseIntensity = intensity;
+            if (bakeOverlay) {
+                // The old noise is in the blurred bitmap
+                forceUpdate = true;
+            }
+            blurView.invalidate();
+        }
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBakeOverlay(boolean enabled) {
+        if (this.bakeOverlay != enabled) {
+            this.bakeOverlay = enabled;
+            forceUpdate = true;
             blurView.invalidate();
         }
         return this;
     }
+
+    @Override
+    public BlurViewFacade setBlurExecutor(@Nullable Executor executor) {
+        this.blurExecutor = executor;
+        if (executor != null && asyncPipeline == null) {
+            asyncPipeline = new AsyncBlurPipeline(blurAlgorithm, blurView);
+        }
+        forceUpdate = true;
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurUpdatePolicy(@NonNull BlurUpdatePolicy policy) {
+        updateScheduler.setPolicy(policy);
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setAdaptiveDownsampling(boolean enabled) {
+        pyramidBlur.setEnabled(enabled);
+        forceUpdate = true;
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade requestBlurUpdate() {
+        forceUpdate = true;
+        // Makes sure there's a frame to update the blur on
+        blurView.invalidate();
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurMetricsListener(@Nullable BlurMetricsListener listener) {
+        this.metricsListener = listener;
+        drawTimeNanos = 0;
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public BlurStats getStats() {
+        stats.bufferBytes = BitmapPool.byteCount(internalBitmap) + BitmapPool.byteCount(backBitmap)
+                + BitmapPool.byteCount(shiftBitmap) + BitmapPool.byteCount(stripBitmap) + pyramidBlur.getLevelBytes();
+        return stats;
+    }
 }
@@ -0,0 +1,163 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Wraps a {@link BlurAlgorithm} to make large blur radii cost about the same as small ones.
+ * <p>
+ * When enabled, the snapshot is halved until the radius fits {@link SizeScaler#MAX_KERNEL_RADIUS},
+ * the smallest level is blurred with the proportionally smaller radius,
+ * then it's upsampled level by level back into the snapshot.
+ * Halving 2x at a time with bilinear filtering avoids the aliasing of a single big downscale.
+ */
+final class PyramidBlur implements BlurAlgorithm {
+    // Halving stops before a level gets smaller than this
+    private static final int MIN_LEVEL_SIZE = 4;
+
+    private final BlurAlgorithm algorithm;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect source = new Rect();
+    private final Rect destination = new Rect();
+    // levels[i] is the snapshot downscaled 2^(i + 1) times
+    private final Bitmap[] levels = new Bitmap[SizeScaler.MAX_DOWNSAMPLE_STEPS];
+    private final Canvas[] levelCanvases = new Canvas[SizeScaler.MAX_DOWNSAMPLE_STEPS];
+    private final Canvas snapshotCanvas = new Canvas();
+    private volatile boolean enabled;
+
+    PyramidBlur(@NonNull BlurAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        // Every level is fully overwritten, no need to clear it first
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        for (int i = 0; i < levelCanvases.length; i++) {
+            levelCanvases[i] = new Canvas();
+        }
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the wrapped algorithm
+     */
+    @NonNull
+    BlurAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public Bitmap blur(@NonNull Bitmap bitmap, float blurRadius) {
+        int steps = enabled ? SizeScaler.downsampleSteps(blurRadius) : 0;
+        while (steps > 0 && ((bitmap.getWidth() >> steps) < MIN_LEVEL_SIZE || (bitmap.getHeight() >> steps) < MIN_LEVEL_SIZE)) {
+            steps--;
+        }
+        if (steps == 0) {
+            return algorithm.blur(bitmap, blurRadius);
+        }
+
+        Bitmap previous = bitmap;
+        for (int i = 0; i < steps; i++) {
+            int divisor = 2 << i;
+            Bitmap level = obtainLevel(i, ceilDiv(bitmap.getWidth(), divisor), ceilDiv(bitmap.getHeight(), divisor), bitmap.getConfig());
+            scale(previous, levelCanvases[i], level);
+            previous = level;
+        }
+
+        Bitmap blurred = algorithm.blur(previous, blurRadius / (1 << steps));
+
+        for (int i = steps - 2; i >= 0; i--) {
+            scale(blurred, levelCanvases[i], levels[i]);
+            blurred = levels[i];
+        }
+        snapshotCanvas.setBitmap(bitmap);
+        scale(blurred, snapshotCanvas, bitmap);
+        snapshotCanvas.setBitmap(null);
+        return bitmap;
+    }
+
+    private Bitmap obtainLevel(int index, int width, int height, Bitmap.Config config) {
+        Bitmap level = levels[index];
+        if (level == null || level.getWidth() != width || level.getHeight() != height || level.getConfig() != config) {
+            level = BitmapPool.resize(level, width, height, config);
+            levels[index] = level;
+            // Also needed when the bitmap was resized in place
+            levelCanvases[index].setBitmap(level);
+        }
+        return level;
+    }
+
+    private void scale(Bitmap from, Canvas canvas, Bitmap to) {
+        source.set(0, 0, from.getWidth(), from.getHeight());
+        destination.set(0, 0, to.getWidth(), to.getHeight());
+        canvas.drawBitmap(from, source, destination, paint);
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    @Override
+    public void destroy() {
+        algorithm.destroy();
+        releaseLevels();
+    }
+
+    @Override
+    public void releaseBuffers() {
+        algorithm.releaseBuffers();
+        releaseLevels();
+    }
+
+    /**
+     * @return how much memory the downscaled levels take
+     */
+    long getLevelBytes() {
+        long bytes = 0;
+        for (Bitmap level : levels) {
+            bytes += BitmapPool.byteCount(level);
+        }
+        return bytes;
+    }
+
+    private void releaseLevels() {
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] != null) {
+                levelCanvases[i].setBitmap(null);
+                BitmapPool.release(levels[i]);
+                levels[i] = null;
+            }
+        }
+    }
+
+    @Override
+    public boolean canModifyBitmap() {
+        return algorithm.canModifyBitmap();
+    }
+
+    @NonNull
+    @Override
+    public Bitmap.Config getSupportedBitmapConfig() {
+        return algorithm.getSupportedBitmapConfig();
+    }
+
+    @Override
+    public boolean supportsRgb565() {
+        return algorithm.supportsRgb565();
+    }
+
+    @Override
+    public void render(@NonNull Canvas canvas, @NonNull Bitmap bitmap) {
+        algorithm.render(canvas, bitmap);
+    }
+}
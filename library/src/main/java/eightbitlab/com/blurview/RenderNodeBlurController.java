@@ -1,21 +1,30 @@
 package eightbitlab.com.blurview;
 
 import android.graphics.Bitmap;
+import android.graphics.BlendMode;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
 import android.graphics.RecordingCanvas;
+import android.graphics.Rect;
 import android.graphics.RenderEffect;
 import android.graphics.RenderNode;
 import android.graphics.Shader;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Trace;
 import android.util.Log;
+import android.view.View;
 import android.view.ViewTreeObserver;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
+import java.util.concurrent.Executor;
+
 import eightbitlab.com.blurview.SizeScaler.Size;
 
 @RequiresApi(api = Build.VERSION_CODES.S)
@@ -28,22 +37,72 @@ public class RenderNodeBlurController implements BlurController {
     private final RenderNode blurNode = new RenderNode("BlurView node");
     private final float scaleFactor;
     private final boolean applyNoise;
+    private final BlurStats stats = new BlurStats();
+    @Nullable
+    private BlurMetricsListener metricsListener;
+    private final BlurFrameMetrics metrics = new BlurFrameMetrics();
+    private final UpdateScheduler updateScheduler;
 
     private Drawable frameClearDrawable;
     private int overlayColor;
+    // Noise and overlay color are chained to the blur effect, see setBakeOverlay
+    private boolean bakeOverlay;
+    private boolean reducedPrecision = true;
     private float blurRadius = 1f;
     private boolean enabled = true;
+    // Set when the update policy allowed an update on this frame, consumed by draw
+    private boolean updatePending = true;
+    private boolean forceUpdate = true;
+    // BlurTarget.drawGeneration the blurNode was recorded at
+    private int recordedGeneration;
+    // The blurNode content depends on more than the target, like the frame clear drawable
+    private boolean recordPending = true;
+    private int lastLeft;
+    private int lastTop;
 
     // Potentially cached stuff from the slow software path
+    private final SizeScaler sizeScaler;
+    // Skips drawing the BlurViews inside the target
+    @Nullable
+    private BlurViewCanvas softwareCanvas;
+    // BlurTarget.contentGeneration and BlurView position of the cached software result
+    private int softwareGeneration;
+    private int softwareLeft;
+    private int softwareTop;
+    // Set when the software result is outdated for reasons other than the target content, like a new radius
+    private boolean softwarePending = true;
+    @Nullable
+    private Size originalSize;
+    @Nullable
+    private Size scaledSize;
     @Nullable
     private Bitmap cachedBitmap;
     @Nullable
-    private RenderScriptBlur fallbackBlur;
+    private StackBlur fallbackBlur;
+    // The BlurView bounds in the target coordinates, for picking the bitmap config
+    private final Rect softwareArea = new Rect();
+
+    // The effect set on the blurNode, and what it was created from
+    @Nullable
+    private RenderEffect effect;
+    @Nullable
+    private RenderEffect effectBlur;
+    private boolean effectBaked;
+    private int effectOverlayColor;
+    private float effectNoiseIntensity;
+    private float noiseIntensity = NoiseGenerator.DEFAULT_INTENSITY;
+    // An equivalent instance to switch to, see refreshEffect
+    @Nullable
+    private RenderEffect alternateEffect;
 
     // This tracks BlurView location in scrollable containers, during animations, etc.
     private final ViewTreeObserver.OnPreDrawListener drawListener = () -> {
         saveOnScreenLocation();
+        // The blurred content must stay aligned with the target even when the policy skips the update
         updateRenderNodeProperties();
+        if (shouldUpdate()) {
+            updatePending = true;
+        }
         return true;
     };
 
@@ -52,7 +111,9 @@ public class RenderNodeBlurController implements BlurController {
         this.overlayColor = overlayColor;
         this.target = target;
         this.scaleFactor = scaleFactor;
+        this.sizeScaler = new SizeScaler(scaleFactor);
         this.applyNoise = applyNoise;
+        this.updateScheduler = new UpdateScheduler(blurView);
         blurView.setWillNotDraw(false);
         blurView.getViewTreeObserver().addOnPreDrawListener(drawListener);
     }
@@ -63,16 +124,56 @@ public class RenderNodeBlurController implements BlurController {
             return true;
         }
         saveOnScreenLocation();
+        boolean update = updatePending;
+        updatePending = false;
 
-        if (canvas.isHardwareAccelerated()) {
-            hardwarePath(canvas);
-        } else {
-            // Rendering on a software canvas.
-            // Presumably this is something taking a programmatic screenshot,
-            // or maybe a software-based View/Fragment transition.
-            // This is slow and shouldn't be a common case for this controller.
-            softwarePath(canvas);
+        metrics.reset();
+        long drawStart = now();
+        boolean updated;
+        Trace.beginSection("BlurView draw");
+        try {
+            if (canvas.isHardwareAccelerated()) {
+                updated = hardwarePath(canvas, update);
+            } else {
+                // Rendering on a software canvas.
+                // Presumably this is something taking a programmatic screenshot,
+                // or maybe a software-based View/Fragment transition.
+                // This is slow and shouldn't be a common case for this controller.
+                updated = softwarePath(canvas);
+            }
+        } finally {
+            Trace.endSection();
+        }
+        if (metricsListener != null) {
+            metrics.updateSkipped = !updated;
+            metrics.drawTimeNanos = now() - drawStart - metrics.captureTimeNanos - metrics.blurTimeNanos;
+            metricsListener.onFrameMetrics(metrics);
+        }
+        return true;
+    }
+
+    /**
+     * @return the current time if a metrics listener is set. Not measuring the time otherwise.
+     */
+    private long now() {
+        return metricsListener != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Applies the update policy. The blurred content itself follows the target on the RenderThread
+     * and the position is updated on every frame, so the policy only limits the re-recording of the snapshot.
+     */
+    private boolean shouldUpdate() {
+        boolean moved = getLeft() != lastLeft || getTop() != lastTop;
+        if (!forceUpdate && !updateScheduler.shouldUpdate(moved)) {
+            stats.updatesSkipped++;
+            return false;
         }
+        stats.updatesPerformed++;
+        updateScheduler.onUpdated();
+        forceUpdate = false;
+        lastLeft = getLeft();
+        lastTop = getTop();
         return true;
     }
 
@@ -80,26 +181,48 @@ public class RenderNodeBlurController implements BlurController {
     // already scales down the snapshot depending on the blur radius.
     // https://cs.android.com/android/platform/superproject/main/+/main:external/skia/src/core/SkImageFilterTypes.cpp;drc=61197364367c9e404c7da6900658f1b16c42d0da;l=2103
     // https://cs.android.com/android/platform/superproject/main/+/main:frameworks/base/libs/hwui/jni/RenderEffect.cpp;l=39;drc=61197364367c9e404c7da6900658f1b16c42d0da?q=nativeCreateBlurEffect&ss=android%2Fplatform%2Fsuperproject%2Fmain
-    private void hardwarePath(Canvas canvas) {
-        // TODO would be good to keep it the size of the BlurView instead of the target, but then the animation
-        //  like translation and rotation would go out of bounds. Not sure if there's a good fix for this
-        blurNode.setPosition(0, 0, target.getWidth(), target.getHeight());
-        updateRenderNodeProperties();
-
-        drawSnapshot();
+    private boolean hardwarePath(Canvas canvas, boolean update) {
+        boolean resized = blurNode.getWidth() != target.getWidth() || blurNode.getHeight() != target.getHeight();
+        // The recorded blurNode references the target RenderNode, so it doesn't have to be recorded again
+        // until the target draws something new
+        boolean contentChanged = recordPending || target.drawGeneration != recordedGeneration;
+        update = (update && contentChanged) || resized || !blurNode.hasDisplayList();
+        if (update) {
+            stats.snapshotRecordings++;
+            recordPending = false;
+            recordedGeneration = target.drawGeneration;
+            // TODO would be good to keep it the size of the BlurView instead of the target, but then the animation
+            //  like translation and rotation would go out of bounds. Not sure if there's a good fix for this
+            blurNode.setPosition(0, 0, target.getWidth(), target.getHeight());
+            updateRenderNodeProperties();
+
+            long recordStart = now();
+            Trace.beginSection("BlurView record");
+            try {
+                drawSnapshot();
+            } finally {
+                Trace.endSection();
+            }
+            metrics.captureTimeNanos = now() - recordStart;
+        } else {
+            stats.snapshotReuses++;
+        }
 
         canvas.save();
         // Don't draw outside of the BlurView bounds if parent has clipChildren = false
         canvas.clipRect(0f, 0f, blurView.getWidth(), blurView.getHeight());
         // Draw on the system canvas
         canvas.drawRenderNode(blurNode);
-        if (applyNoise) {
-            Noise.apply(canvas, blurView.getContext(), blurView.getWidth(), blurView.getHeight());
-        }
-        if (overlayColor != Color.TRANSPARENT) {
-            canvas.drawColor(overlayColor);
+        if (!bakeOverlay) {
+            if (applyNoise) {
+                Noise.apply(canvas, noiseIntensity, blurView.getWidth(), blurView.getHeight());
+            }
+            if (overlayColor != Color.TRANSPARENT) {
+                canvas.drawColor(overlayColor);
+            }
         }
         canvas.restore();
+        return update;
     }
 
     private void updateRenderNodeProperties() {
@@ -107,15 +230,16 @@ public class RenderNodeBlurController implements BlurController {
         float layoutTranslationY = -getTop();
 
         // Pivot point for the rotation and scale (in case it's applied)
-        blurNode.setPivotX(blurView.getWidth() / 2f - layoutTranslationX);
-        blurNode.setPivotY(blurView.getHeight() / 2f - layoutTranslationY);
-        blurNode.setTranslationX(layoutTranslationX);
-        blurNode.setTranslationY(layoutTranslationY);
+        // The setters return whether the value changed
+        boolean changed = blurNode.setPivotX(blurView.getWidth() / 2f - layoutTranslationX);
+        changed |= blurNode.setPivotY(blurView.getHeight() / 2f - layoutTranslationY);
+        changed |= blurNode.setTranslationX(layoutTranslationX);
+        changed |= blurNode.setTranslationY(layoutTranslationY);
 
-        if (Build.VERSION.SDK_INT == Build.VERSION_CODES.S) {
+        if (changed && Build.VERSION.SDK_INT == Build.VERSION_CODES.S) {
             // There's a bug on API 31 - blurNode doesn't get re-rendered on setting new translation/scale/rotation,
             // so we need to re-apply the blur effect to trigger a redraw.
-            applyBlur();
+            refreshEffect();
         }
     }
 
@@ -125,43 +249,98 @@ public class RenderNodeBlurController implements BlurController {
             frameClearDrawable.draw(recordingCanvas);
         }
         recordingCanvas.drawRenderNode(target.renderNode);
-        // Looks like the order of this doesn't matter
+        // Looks like the order of this doesn't matter.
+        // Doesn't create a new effect if nothing changed.
         applyBlur();
         blurNode.endRecording();
     }
 
-    private void softwarePath(Canvas canvas) {
-        SizeScaler sizeScaler = new SizeScaler(scaleFactor);
-        Size original = new Size(blurView.getWidth(), blurView.getHeight());
-        Size scaled = sizeScaler.scale(original);
-        if (cachedBitmap == null || cachedBitmap.getWidth() != scaled.width || cachedBitmap.getHeight() != scaled.height) {
-            cachedBitmap = Bitmap.createBitmap(scaled.width, scaled.height, Bitmap.Config.ARGB_8888);
+    /**
+     * Unlike the hardware path, doesn't depend on the pre-draw updates, because programmatic screenshots
+     * don't trigger them. Draws the previous result again unless the target content or the BlurView position changed.
+     */
+    private boolean softwarePath(Canvas canvas) {
+        boolean update = softwarePending || softwareGeneration != target.contentGeneration
+                || softwareLeft != getLeft() || softwareTop != getTop();
+        if (originalSize == null || originalSize.width != blurView.getWidth() || originalSize.height != blurView.getHeight()) {
+            originalSize = new Size(blurView.getWidth(), blurView.getHeight());
+            scaledSize = sizeScaler.scale(originalSize);
+            update = true;
         }
-        Canvas softwareCanvas = new Canvas(cachedBitmap);
-
-        softwareCanvas.save();
-        setupCanvasMatrix(softwareCanvas, original, scaled);
-        if (frameClearDrawable != null) {
-            frameClearDrawable.draw(canvas);
+        Size original = originalSize;
+        Size scaled = scaledSize;
+        if (fallbackBlur == null) {
+            // Pure Java, creating a RenderScript context would take too long on the UI thread
+            fallbackBlur = new StackBlur();
         }
-        try {
-            target.draw(softwareCanvas);
-        } catch (Exception e) {
-            // Can potentially fail on rendering Hardware Bitmaps or something like that
-            Log.e("BlurView", "Error during snapshot capturing", e);
+        softwareArea.set(getLeft(), getTop(), getLeft() + original.width, getTop() + original.height);
+        Bitmap.Config config = BufferConfig.choose(fallbackBlur, reducedPrecision, frameClearDrawable, target, softwareArea);
+        if (cachedBitmap == null || cachedBitmap.getWidth() != scaled.width || cachedBitmap.getHeight() != scaled.height
+                || cachedBitmap.getConfig() != config) {
+            cachedBitmap = BitmapPool.resize(cachedBitmap, scaled.width, scaled.height, config);
+            if (softwareCanvas == null) {
+                softwareCanvas = new BlurViewCanvas(cachedBitmap);
+            } else {
+                // Also needed when the bitmap was resized in place
+                softwareCanvas.setBitmap(cachedBitmap);
+            }
+            update = true;
         }
-        softwareCanvas.restore();
-
-        if (fallbackBlur == null) {
-            fallbackBlur = new RenderScriptBlur(blurView.getContext());
+        if (update) {
+            softwarePending = false;
+            softwareGeneration = target.contentGeneration;
+            softwareLeft = getLeft();
+            softwareTop = getTop();
+            long captureStart = now();
+            Trace.beginSection("BlurView capture");
+            try {
+                if (frameClearDrawable == null) {
+                    cachedBitmap.eraseColor(Color.TRANSPARENT);
+                } else {
+                    frameClearDrawable.draw(softwareCanvas);
+                }
+                softwareCanvas.save();
+                setupCanvasMatrix(softwareCanvas, original, scaled);
+                try {
+                    target.draw(softwareCanvas);
+                } catch (Exception e) {
+                    // Can potentially fail on rendering Hardware Bitmaps or something like that
+                    Log.e("BlurView", "Error during snapshot capturing", e);
+                }
+                softwareCanvas.restore();
+            } finally {
+                Trace.endSection();
+            }
+            metrics.captureTimeNanos = now() - captureStart;
+
+            long blurStart = now();
+            Trace.beginSection("BlurView blur");
+            try {
+                fallbackBlur.blur(cachedBitmap, blurRadius);
+                if (bakeOverlay) {
+                    drawOverlay(softwareCanvas, scaled.width, scaled.height);
+                }
+            } finally {
+                Trace.endSection();
+            }
+            metrics.blurTimeNanos = now() - blurStart;
         }
-        fallbackBlur.blur(cachedBitmap, blurRadius);
+        metrics.bitmapWidth = cachedBitmap.getWidth();
+        metrics.bitmapHeight = cachedBitmap.getHeight();
+        metrics.bitmapBytes = cachedBitmap.getByteCount();
         canvas.save();
         canvas.scale((float) original.width / scaled.width, (float) original.height / scaled.height);
         fallbackBlur.render(canvas, cachedBitmap);
         canvas.restore();
+        if (!bakeOverlay) {
+            drawOverlay(canvas, blurView.getWidth(), blurView.getHeight());
+        }
+        return update;
+    }
+
+    private void drawOverlay(Canvas canvas, int width, int height) {
         if (applyNoise) {
-            Noise.apply(canvas, blurView.getContext(), blurView.getWidth(), blurView.getHeight());
+            Noise.apply(canvas, noiseIntensity, width, height);
         }
         if (overlayColor != Color.TRANSPARENT) {
             canvas.drawColor(overlayColor);
@@ -203,6 +382,26 @@ public class RenderNodeBlurController implements BlurController {
             fallbackBlur.destroy();
             fallbackBlur = null;
         }
+        releaseSoftwareBitmap();
+        softwareCanvas = null;
+    }
+
+    @Override
+    public void releaseBuffers() {
+        // Recorded again on the next draw
+        blurNode.discardDisplayList();
+        if (fallbackBlur != null) {
+            fallbackBlur.releaseBuffers();
+        }
+        releaseSoftwareBitmap();
+    }
+
+    private void releaseSoftwareBitmap() {
+        if (cachedBitmap != null) {
+            softwareCanvas.setBitmap(null);
+            BitmapPool.release(cachedBitmap);
+            cachedBitmap = null;
+        }
     }
 
     @Override
@@ -224,33 +423,171 @@ public class RenderNodeBlurController implements BlurController {
     @Override
     public BlurViewFacade setFrameClearDrawable(@Nullable Drawable frameClearDrawable) {
         this.frameClearDrawable = frameClearDrawable;
+        recordPending = true;
+        requestBlurUpdate();
         return this;
     }
 
     @Override
     public BlurViewFacade setBlurRadius(float radius) {
         this.blurRadius = radius;
+        softwarePending = true;
         applyBlur();
         return this;
     }
 
+    /**
+     * Sets the blur effect on the blurNode, unless the current one is already up to date
+     */
     private void applyBlur() {
         // scaleFactor is only used to increase the blur radius
         // because RenderEffect already scales down the snapshot when needed.
         float realBlurRadius = blurRadius * scaleFactor;
-        RenderEffect blur = RenderEffect.createBlurEffect(realBlurRadius, realBlurRadius, Shader.TileMode.CLAMP);
-        blurNode.setRenderEffect(blur);
+        RenderEffect blur = BlurEffectCache.get(realBlurRadius, Shader.TileMode.CLAMP);
+        if (effect != null && blur == effectBlur && bakeOverlay == effectBaked
+                && (!bakeOverlay || (overlayColor == effectOverlayColor && noiseIntensity == effectNoiseIntensity))) {
+            return;
+        }
+        effect = createEffect(blur);
+        effectBlur = blur;
+        effectBaked = bakeOverlay;
+        effectOverlayColor = overlayColor;
+        effectNoiseIntensity = noiseIntensity;
+        alternateEffect = null;
+        blurNode.setRenderEffect(effect);
+    }
+
+    /**
+     * Sets an equivalent effect instance, which makes API 31 redraw the blurNode.
+     * Switches between two instances instead of creating a new one every time.
+     */
+    private void refreshEffect() {
+        applyBlur();
+        if (alternateEffect == null) {
+            float realBlurRadius = blurRadius * scaleFactor;
+            alternateEffect = createEffect(RenderEffect.createBlurEffect(realBlurRadius, realBlurRadius, Shader.TileMode.CLAMP));
+        }
+        RenderEffect current = effect;
+        effect = alternateEffect;
+        alternateEffect = current;
+        blurNode.setRenderEffect(effect);
+    }
+
+    private RenderEffect createEffect(RenderEffect blur) {
+        RenderEffect effect = blur;
+        if (bakeOverlay) {
+            if (applyNoise && noiseIntensity > 0f) {
+                // The noise tile is alpha-only, the color filter turns it into gray
+                RenderEffect noise = RenderEffect.createColorFilterEffect(
+                        Noise.createColorFilter(noiseIntensity),
+                        RenderEffect.createShaderEffect(Noise.getShader()));
+                effect = RenderEffect.createBlendModeEffect(effect, noise, BlendMode.SRC_ATOP);
+            }
+            if (overlayColor != Color.TRANSPARENT) {
+                ColorFilter overlay = new PorterDuffColorFilter(overlayColor, PorterDuff.Mode.SRC_OVER);
+                effect = RenderEffect.createColorFilterEffect(overlay, effect);
+            }
+        }
+        return effect;
     }
 
     @Override
     public BlurViewFacade setOverlayColor(int overlayColor) {
         if (this.overlayColor != overlayColor) {
             this.overlayColor = overlayColor;
+            if (bakeOverlay) {
+                applyBlur();
+                forceUpdate = true;
+                softwarePending = true;
+            }
+            blurView.invalidate();
+        }
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurCacheKey(@Nullable Object contentKey) {
+        // The RenderEffect blur result is never available as a Bitmap
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setScrollingContent(@Nullable View scrollingView) {
+        // The RenderEffect blur is done by the GPU, re-blurring a strip wouldn't be cheaper
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setReducedPrecision(boolean enabled) {
+        this.reducedPrecision = enabled;
+        // Only affects the software path
+        return requestBlurUpdate();
+    }
+
+    @Override
+    public BlurViewFacade setNoiseIntensity(float intensity) {
+        if (this.noiseIntensity != intensity) {
+            this.noiseIntensity = intensity;
+            if (bakeOverlay) {
+                applyBlur();
+                forceUpdate = true;
+                softwarePending = true;
+            }
             blurView.invalidate();
         }
         return this;
     }
 
+    @Override
+    public BlurViewFacade setBakeOverlay(boolean enabled) {
+        if (this.bakeOverlay != enabled) {
+            this.bakeOverlay = enabled;
+            applyBlur();
+            requestBlurUpdate();
+        }
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurExecutor(@Nullable Executor executor) {
+        // RenderEffect blur already runs on the RenderThread
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurUpdatePolicy(@NonNull BlurUpdatePolicy policy) {
+        updateScheduler.setPolicy(policy);
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setAdaptiveDownsampling(boolean enabled) {
+        // RenderEffect already downscales the content depending on the blur radius
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade requestBlurUpdate() {
+        forceUpdate = true;
+        softwarePending = true;
+        blurView.invalidate();
+        return this;
+    }
+
+    @Override
+    public BlurViewFacade setBlurMetricsListener(@Nullable BlurMetricsListener listener) {
+        this.metricsListener = listener;
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public BlurStats getStats() {
+        // The RenderEffect buffers are owned by the RenderThread, only the software fallback bitmap is known here
+        stats.bufferBytes = BitmapPool.byteCount(cachedBitmap);
+        return stats;
+    }
+
     void updateRotation(float rotation) {
         blurNode.setRotationZ(-rotation);
     }
@@ -6,10 +6,7 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.renderscript.Allocation;
-import android.renderscript.Element;
 import android.renderscript.RenderScript;
-import android.renderscript.ScriptIntrinsicBlur;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -24,23 +21,16 @@ import androidx.annotation.NonNull;
 @Deprecated
 public class RenderScriptBlur implements BlurAlgorithm {
     private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
-    private final RenderScript renderScript;
-    private final ScriptIntrinsicBlur blurScript;
-    private Allocation outAllocation;
-
-    private int lastBitmapWidth = -1;
-    private int lastBitmapHeight = -1;
+    private final BlurBackends.RenderScriptBackend backend;
+    private boolean destroyed;
 
     /**
+     * The {@link RenderScript} context and the Allocations are shared with the other instances, see {@link BlurBackends}.
+     *
      * @param context Context to create the {@link RenderScript}
      */
     public RenderScriptBlur(@NonNull Context context) {
-        renderScript = RenderScript.create(context);
-        blurScript = ScriptIntrinsicBlur.create(renderScript, Element.U8_4(renderScript));
-    }
-
-    private boolean canReuseAllocation(@NonNull Bitmap bitmap) {
-        return bitmap.getHeight() == lastBitmapHeight && bitmap.getWidth() == lastBitmapWidth;
+        backend = BlurBackends.acquireRenderScript(context);
     }
 
     /**
@@ -51,25 +41,7 @@ public class RenderScriptBlur implements BlurAlgorithm {
     @Override
     public Bitmap blur(@NonNull Bitmap bitmap, float blurRadius) {
         try {
-            //Allocation will use the same backing array of pixels as bitmap if created with USAGE_SHARED flag
-            Allocation inAllocation = Allocation.createFromBitmap(renderScript, bitmap);
-
-            if (!canReuseAllocation(bitmap)) {
-                if (outAllocation != null) {
-                    outAllocation.destroy();
-                }
-                outAllocation = Allocation.createTyped(renderScript, inAllocation.getType());
-                lastBitmapWidth = bitmap.getWidth();
-                lastBitmapHeight = bitmap.getHeight();
-            }
-
-            blurScript.setRadius(min(blurRadius, 25f));
-            blurScript.setInput(inAllocation);
-            //do not use inAllocation in forEach. it will cause visual artifacts on blurred Bitmap
-            blurScript.forEach(outAllocation);
-            outAllocation.copyTo(bitmap);
-
-            inAllocation.destroy();
+            backend.blur(bitmap, min(blurRadius, 25f));
         } catch (Exception e) {
             // Can potentially crash because RenderScript context was released by someone else via RenderScript.releaseAllContexts()
             // Some Glide transformations can cause this.
@@ -80,11 +52,19 @@ public class RenderScriptBlur implements BlurAlgorithm {
 
     @Override
     public final void destroy() {
-        blurScript.destroy();
-        renderScript.destroy();
-        if (outAllocation != null) {
-            outAllocation.destroy();
+        if (destroyed) {
+            return;
         }
+        destroyed = true;
+        BlurBackends.release(backend);
+    }
+
+    /**
+     * The Allocations stay in {@link BlurBackends} with the released bitmaps,
+     * so the next BlurView that gets them from the pool doesn't create new ones
+     */
+    @Override
+    public void releaseBuffers() {
     }
 
     @Override
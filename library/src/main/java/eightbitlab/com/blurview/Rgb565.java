@@ -0,0 +1,40 @@
+package eightbitlab.com.blurview;
+
+/**
+ * Converts between the raw pixels of an {@link android.graphics.Bitmap.Config#RGB_565} bitmap
+ * and the opaque ARGB pixels the Java kernels blur. Pure Java, so it's covered by the JVM tests and benchmarks.
+ */
+final class Rgb565 {
+
+    private Rgb565() {
+    }
+
+    /**
+     * Expands each channel by repeating its high bits, so black and white stay black and white
+     */
+    static void unpack(short[] packed, int[] argb, int count) {
+        for (int i = 0; i < count; i++) {
+            int pixel = packed[i] & 0xFFFF;
+            int r = pixel >>> 11;
+            int g = (pixel >>> 5) & 0x3F;
+            int b = pixel & 0x1F;
+            argb[i] = 0xFF000000
+                    | (r << 3 | r >>> 2) << 16
+                    | (g << 2 | g >>> 4) << 8
+                    | (b << 3 | b >>> 2);
+        }
+    }
+
+    /**
+     * Rounds each channel to the nearest 5 or 6 bit value, the alpha is dropped
+     */
+    static void pack(int[] argb, short[] packed, int count) {
+        for (int i = 0; i < count; i++) {
+            int pixel = argb[i];
+            int r = ((pixel >>> 16) & 0xFF) * 31 + 127;
+            int g = ((pixel >>> 8) & 0xFF) * 63 + 127;
+            int b = (pixel & 0xFF) * 31 + 127;
+            packed[i] = (short) (r / 255 << 11 | g / 255 << 5 | b / 255);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Tracks how far the content of a scrolling container moved since the last snapshot.
+ * <p>
+ * Follows its first and last children on the screen, so it works with containers that scroll
+ * by changing the scroll position (ScrollView) as well as by moving the children (RecyclerView, ListView).
+ * Both children have to move by the same distance, otherwise it's not a pure scroll.
+ * A child recycled in between usually jumps to the other end, which is caught by this check.
+ */
+final class ScrollTracker {
+    private final View scrollingView;
+    private final int[] location = new int[2];
+
+    @Nullable
+    private View firstAnchor;
+    @Nullable
+    private View lastAnchor;
+    private final Point firstPosition = new Point();
+    private final Point lastPosition = new Point();
+
+    ScrollTracker(@NonNull View scrollingView) {
+        this.scrollingView = scrollingView;
+    }
+
+    /**
+     * Remembers the current position of the content. Called after each snapshot.
+     */
+    void reset() {
+        firstAnchor = null;
+        lastAnchor = null;
+        if (!(scrollingView instanceof ViewGroup)) {
+            return;
+        }
+        ViewGroup container = (ViewGroup) scrollingView;
+        int childCount = container.getChildCount();
+        if (childCount == 0) {
+            return;
+        }
+        firstAnchor = container.getChildAt(0);
+        lastAnchor = container.getChildAt(childCount - 1);
+        getPosition(firstAnchor, firstPosition);
+        getPosition(lastAnchor, lastPosition);
+    }
+
+    /**
+     * @param delta receives the distance the content moved since the last {@link #reset()}, in pixels
+     * @return false if the content didn't move as a whole, or it can't be tracked
+     */
+    boolean computeDelta(@NonNull Point delta) {
+        if (firstAnchor == null || lastAnchor == null
+                || firstAnchor.getParent() != scrollingView || lastAnchor.getParent() != scrollingView) {
+            return false;
+        }
+        getPosition(firstAnchor, delta);
+        int deltaX = delta.x - firstPosition.x;
+        int deltaY = delta.y - firstPosition.y;
+        getPosition(lastAnchor, delta);
+        if (delta.x - lastPosition.x != deltaX || delta.y - lastPosition.y != deltaY) {
+            return false;
+        }
+        delta.set(deltaX, deltaY);
+        return true;
+    }
+
+    /**
+     * @param rootLocation location of the root View on the screen
+     * @param bounds       receives the bounds of the scrolling container in the root View coordinates
+     */
+    void getBounds(@NonNull int[] rootLocation, @NonNull Rect bounds) {
+        scrollingView.getLocationOnScreen(location);
+        int left = location[0] - rootLocation[0];
+        int top = location[1] - rootLocation[1];
+        bounds.set(left, top, left + scrollingView.getWidth(), top + scrollingView.getHeight());
+    }
+
+    private void getPosition(View view, Point position) {
+        view.getLocationOnScreen(location);
+        position.set(location[0], location[1]);
+    }
+}
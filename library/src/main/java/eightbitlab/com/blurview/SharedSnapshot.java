@@ -0,0 +1,189 @@
+package eightbitlab.com.blurview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+import android.view.animation.AnimationUtils;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * A downscaled snapshot of a {@link BlurTarget}, shared by all {@link PreDrawBlurController}s
+ * attached to it with the same scale factor.
+ * <p>
+ * The target is drawn at most once per frame, into a single bitmap covering the union of the areas
+ * of all attached BlurViews. Each controller then copies its own part from it.
+ * This way the capture cost doesn't grow with the number of BlurViews.
+ * <p>
+ * The snapshot pixels form a grid aligned to the target, and the controllers align their buffers to the same grid,
+ * so the copy is 1:1 and the content isn't resampled twice. Areas are in the grid pixels.
+ */
+final class SharedSnapshot {
+    private final BlurTarget target;
+    private final float scaleFactor;
+    private final ArrayList<PreDrawBlurController> controllers = new ArrayList<>();
+    // No filtering, the pixels are copied 1:1
+    private final Paint paint = new Paint();
+
+    // Region of the target invalidated since the last capture, in the target coordinates
+    private final Rect dirtyRegion = new Rect();
+    // Part of the grid the bitmap currently holds, and the same part in the target coordinates
+    private final Rect capturedArea = new Rect();
+    private final Rect capturedTargetArea = new Rect();
+    private final Rect requiredArea = new Rect();
+    private final Rect controllerArea = new Rect();
+    // Union of the areas of all attached controllers, computed once per frame
+    private final Rect unionArea = new Rect();
+    private long unionFrameTime = -1;
+
+    private Bitmap bitmap;
+    private BlurViewCanvas canvas;
+    private boolean hasContent;
+    // Number of times the target was drawn, for tests and benchmarks
+    long captureCount;
+
+    private SharedSnapshot(@NonNull BlurTarget target, float scaleFactor) {
+        this.target = target;
+        this.scaleFactor = scaleFactor;
+        target.addDirtyTracker(dirtyRegion);
+    }
+
+    /**
+     * @return the snapshot of the target for the given scale factor, created if needed
+     */
+    static SharedSnapshot acquire(@NonNull BlurTarget target, float scaleFactor, @NonNull PreDrawBlurController controller) {
+        SharedSnapshot snapshot = null;
+        for (SharedSnapshot candidate : target.sharedSnapshots) {
+            if (candidate.scaleFactor == scaleFactor) {
+                snapshot = candidate;
+                break;
+            }
+        }
+        if (snapshot == null) {
+            snapshot = new SharedSnapshot(target, scaleFactor);
+            target.sharedSnapshots.add(snapshot);
+        }
+        snapshot.controllers.add(controller);
+        snapshot.unionFrameTime = -1;
+        return snapshot;
+    }
+
+    void release(@NonNull PreDrawBlurController controller) {
+        if (!controllers.remove(controller)) {
+            return;
+        }
+        unionFrameTime = -1;
+        if (controllers.isEmpty()) {
+            target.removeDirtyTracker(dirtyRegion);
+            target.sharedSnapshots.remove(this);
+            BitmapPool.release(bitmap);
+            bitmap = null;
+            canvas = null;
+            hasContent = false;
+        }
+    }
+
+    /**
+     * Frees the bitmap once none of the controllers holds its buffers, for example after all of them were detached.
+     * The target is captured again on the next update.
+     */
+    void releaseBitmap() {
+        for (int i = 0; i < controllers.size(); i++) {
+            if (controllers.get(i).holdsBuffers()) {
+                return;
+            }
+        }
+        if (canvas != null) {
+            canvas.setBitmap(null);
+        }
+        BitmapPool.release(bitmap);
+        bitmap = null;
+        hasContent = false;
+    }
+
+    /**
+     * Captures the target again if the areas of the attached BlurViews aren't covered by the current bitmap,
+     * or the covered part was invalidated. Otherwise it's a no-op, so every controller can call it on every frame.
+     * <p>
+     * The other BlurViews are measured once per frame. They're usually updated in the same frame,
+     * so capturing their areas too saves a traversal for each of them.
+     *
+     * @param area the part of the grid the calling controller needs, it's always covered
+     */
+    void update(@NonNull Rect area) {
+        long frameTime = AnimationUtils.currentAnimationTimeMillis();
+        if (frameTime != unionFrameTime) {
+            unionFrameTime = frameTime;
+            unionArea.setEmpty();
+            for (int i = 0; i < controllers.size(); i++) {
+                if (controllers.get(i).computeSnapshotArea(controllerArea)) {
+                    unionArea.union(controllerArea);
+                }
+            }
+        }
+        requiredArea.set(unionArea);
+        requiredArea.union(area);
+        if (requiredArea.isEmpty()) {
+            return;
+        }
+
+        boolean covered = hasContent && capturedArea.contains(requiredArea);
+        if (covered && (dirtyRegion.isEmpty() || !Rect.intersects(dirtyRegion, capturedTargetArea))) {
+            return;
+        }
+        capture(requiredArea);
+    }
+
+    private void capture(Rect area) {
+        int width = area.width();
+        int height = area.height();
+        // Only growing the bitmap, so moving BlurViews don't cause an allocation on every frame
+        if (bitmap == null || bitmap.getWidth() < width || bitmap.getHeight() < height) {
+            int newWidth = bitmap == null ? width : Math.max(width, bitmap.getWidth());
+            int newHeight = bitmap == null ? height : Math.max(height, bitmap.getHeight());
+            bitmap = BitmapPool.resize(bitmap, newWidth, newHeight, Bitmap.Config.ARGB_8888);
+            if (canvas == null) {
+                canvas = new BlurViewCanvas(bitmap);
+            } else {
+                canvas.setBitmap(bitmap);
+            }
+        }
+
+        capturedArea.set(area);
+        capturedTargetArea.set((int) (area.left * scaleFactor), (int) (area.top * scaleFactor),
+                (int) Math.ceil(area.right * scaleFactor), (int) Math.ceil(area.bottom * scaleFactor));
+        // Cleared before capturing, so invalidations happening during the capture trigger the next one
+        dirtyRegion.setEmpty();
+        bitmap.eraseColor(Color.TRANSPARENT);
+
+        canvas.save();
+        // Children outside of the clip are rejected before drawing
+        canvas.clipRect(0, 0, width, height);
+        canvas.translate(-area.left, -area.top);
+        canvas.scale(1 / scaleFactor, 1 / scaleFactor);
+        try {
+            target.draw(canvas);
+        } catch (Exception e) {
+            // Can potentially fail on rendering Hardware Bitmaps or something like that
+            Log.e("BlurView", "Error during snapshot capturing", e);
+        }
+        canvas.restore();
+        hasContent = true;
+        captureCount++;
+    }
+
+    /**
+     * Copies the snapshot to a canvas of a buffer starting at the given grid pixel.
+     */
+    void draw(@NonNull Canvas destination, int left, int top) {
+        if (!hasContent) {
+            return;
+        }
+        destination.drawBitmap(bitmap, capturedArea.left - left, capturedArea.top - top, paint);
+    }
+}
@@ -12,6 +12,9 @@ public class SizeScaler {
     // This will help avoiding an extra bitmap allocation when passing the bitmap to RenderScript for blur.
     // Usually it's 16, but on Samsung devices it's 64 for some reason.
     private static final int ROUNDING_VALUE = 64;
+    // Largest radius the blur kernel runs with in the adaptive downsampling mode
+    static final float MAX_KERNEL_RADIUS = 8f;
+    static final int MAX_DOWNSAMPLE_STEPS = 6;
     private final float scaleFactor;
     private final boolean noStrideAlignment;
 
@@ -24,6 +27,10 @@ public class SizeScaler {
         this.noStrideAlignment = noStrideAlignment;
     }
 
+    float getScaleFactor() {
+        return scaleFactor;
+    }
+
     Size scale(int width, int height) {
         int nonRoundedScaledWidth = downscaleSize(width);
         int scaledWidth = roundSize(nonRoundedScaledWidth);
@@ -39,14 +46,39 @@ public class SizeScaler {
         return scale(size.width, size.height);
     }
 
+    /**
+     * Unlike {@link #scale(int, int)}, keeps the scale factor exact and covers the View with whole pixels of a grid
+     * aligned to the parent instead. The View can start anywhere within a grid pixel, hence one extra column and row.
+     */
+    Size scaleToGrid(int width, int height) {
+        return new Size(roundSize(downscaleSize(width) + 1), downscaleSize(height) + 1);
+    }
+
+    Size scaleToGrid(Size size) {
+        return scaleToGrid(size.width, size.height);
+    }
+
     boolean isZeroSized(int measuredWidth, int measuredHeight) {
         return downscaleSize(measuredHeight) == 0 || downscaleSize(measuredWidth) == 0;
     }
 
+    /**
+     * @return how many times the snapshot has to be halved, so the blur radius becomes
+     * not larger than {@link #MAX_KERNEL_RADIUS}
+     */
+    static int downsampleSteps(float blurRadius) {
+        int steps = 0;
+        while (blurRadius > MAX_KERNEL_RADIUS && steps < MAX_DOWNSAMPLE_STEPS) {
+            blurRadius /= 2;
+            steps++;
+        }
+        return steps;
+    }
+
     /**
      * Rounds a value to the nearest divisible by {@link #ROUNDING_VALUE} to meet stride requirement
      */
-    private int roundSize(int value) {
+    int roundSize(int value) {
         if (noStrideAlignment) {
             return value;
         }
@@ -56,6 +88,16 @@ public class SizeScaler {
         return value - (value % ROUNDING_VALUE) + ROUNDING_VALUE;
     }
 
+    /**
+     * Rounds a value down to the nearest divisible by {@link #ROUNDING_VALUE}
+     */
+    int roundSizeDown(int value) {
+        if (noStrideAlignment) {
+            return value;
+        }
+        return value - (value % ROUNDING_VALUE);
+    }
+
     private int downscaleSize(float value) {
         return (int) Math.ceil(value / scaleFactor);
     }
@@ -0,0 +1,21 @@
+package eightbitlab.com.blurview;
+
+/**
+ * Pure Java StackBlur, processed on the CPU on a small pool of worker threads.
+ * Doesn't depend on RenderScript and isn't limited to a radius of 25.
+ * <p>
+ * Used as a fallback on API < 31 when RenderScript can't be created.
+ */
+public class StackBlur extends KernelBlur {
+    private final StackBlurKernel kernel = new StackBlurKernel(StripeExecutor.getDefault());
+
+    @Override
+    void blurPixels(int[] pixels, int width, int height, float radius) {
+        kernel.blur(pixels, width, height, Math.round(radius));
+    }
+
+    @Override
+    void blurPixels(short[] pixels, int width, int height, float radius) {
+        kernel.blur(pixels, width, height, Math.round(radius));
+    }
+}
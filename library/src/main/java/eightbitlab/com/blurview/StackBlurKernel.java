@@ -0,0 +1,316 @@
+package eightbitlab.com.blurview;
+
+/**
+ * StackBlur by Mario Klingemann, working in place on packed 32 bit pixels.
+ * <p>
+ * Each of the 4 bytes of a pixel is blurred independently, so the byte order doesn't matter
+ * and the pixels can be passed as they are stored in the Bitmap (premultiplied).
+ * RGB_565 pixels are blurred as they are too, with 3 channels and half of the memory traffic.
+ * <p>
+ * The horizontal pass is split into row stripes and the vertical one into column stripes,
+ * which are processed in parallel on the {@link StripeExecutor}.
+ * Scratch buffers are kept between calls, so blurring the same size with the same radius doesn't allocate.
+ * <p>
+ * Not thread safe, use a separate instance per thread.
+ */
+final class StackBlurKernel implements StripeExecutor.StripeTask {
+
+    // Keeps the weighted channel sums (255 * (radius + 1)^2) within int range
+    static final int MAX_RADIUS = 1024;
+
+    // Splitting small images between threads costs more than it saves
+    private static final int MIN_PARALLEL_PIXELS = 128 * 128;
+
+    private final StripeExecutor executor;
+
+    private int[][] stacks = new int[0][];
+    private int[] pixels;
+    private short[] packedPixels;
+    private int width;
+    private int height;
+    private int radius;
+    private long multiplier;
+    private boolean horizontalPass;
+
+    StackBlurKernel(StripeExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param pixels packed pixels, blurred in place
+     * @param width  image width
+     * @param height image height
+     * @param radius blur radius in pixels, clamped to {@link #MAX_RADIUS}
+     */
+    void blur(int[] pixels, int width, int height, int radius) {
+        this.pixels = pixels;
+        try {
+            blur(width, height, radius);
+        } finally {
+            this.pixels = null;
+        }
+    }
+
+    /**
+     * @param pixels raw RGB_565 pixels, blurred in place
+     * @param width  image width
+     * @param height image height
+     * @param radius blur radius in pixels, clamped to {@link #MAX_RADIUS}
+     */
+    void blur(short[] pixels, int width, int height, int radius) {
+        this.packedPixels = pixels;
+        try {
+            blur(width, height, radius);
+        } finally {
+            this.packedPixels = null;
+        }
+    }
+
+    private void blur(int width, int height, int radius) {
+        radius = Math.min(radius, MAX_RADIUS);
+        if (radius < 1 || width <= 0 || height <= 0) {
+            return;
+        }
+
+        int stripeCount = width * height < MIN_PARALLEL_PIXELS ? 1 : executor.getParallelism();
+        ensureStacks(stripeCount, 2 * radius + 1);
+
+        this.width = width;
+        this.height = height;
+        this.radius = radius;
+        // Ceiling, so the full intensity isn't rounded down to 254
+        long weightSum = (long) (radius + 1) * (radius + 1);
+        this.multiplier = ((1L << 32) + weightSum - 1) / weightSum;
+
+        horizontalPass = true;
+        runPass(stripeCount);
+        horizontalPass = false;
+        runPass(stripeCount);
+    }
+
+    private void runPass(int stripeCount) {
+        if (stripeCount == 1) {
+            run(0, 1);
+        } else {
+            executor.execute(this);
+        }
+    }
+
+    private void ensureStacks(int stripeCount, int stackSize) {
+        if (stacks.length < stripeCount) {
+            int[][] newStacks = new int[stripeCount][];
+            System.arraycopy(stacks, 0, newStacks, 0, stacks.length);
+            stacks = newStacks;
+        }
+        for (int i = 0; i < stripeCount; i++) {
+            if (stacks[i] == null || stacks[i].length < stackSize) {
+                stacks[i] = new int[stackSize];
+            }
+        }
+    }
+
+    @Override
+    public void run(int stripe, int stripeCount) {
+        int[] stack = stacks[stripe];
+        if (horizontalPass) {
+            int from = height * stripe / stripeCount;
+            int to = height * (stripe + 1) / stripeCount;
+            for (int y = from; y < to; y++) {
+                if (packedPixels != null) {
+                    blurLine(packedPixels, y * width, 1, width, radius, multiplier, stack);
+                } else {
+                    blurLine(pixels, y * width, 1, width, radius, multiplier, stack);
+                }
+            }
+        } else {
+            int from = width * stripe / stripeCount;
+            int to = width * (stripe + 1) / stripeCount;
+            for (int x = from; x < to; x++) {
+                if (packedPixels != null) {
+                    blurLine(packedPixels, x, width, height, radius, multiplier, stack);
+                } else {
+                    blurLine(pixels, x, width, height, radius, multiplier, stack);
+                }
+            }
+        }
+    }
+
+    /**
+     * Blurs a single row or column in place.
+     *
+     * @param start      index of the first pixel of the line
+     * @param step       distance between two neighbour pixels of the line
+     * @param length     number of pixels in the line
+     * @param multiplier 2^32 / sum of the kernel weights
+     * @param stack      scratch array of at least 2 * radius + 1 elements
+     */
+    static void blurLine(int[] pixels, int start, int step, int length,
+                         int radius, long multiplier, int[] stack) {
+        int div = 2 * radius + 1;
+        int last = length - 1;
+
+        int sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int in0 = 0, in1 = 0, in2 = 0, in3 = 0;
+        int out0 = 0, out1 = 0, out2 = 0, out3 = 0;
+
+        for (int i = -radius; i <= radius; i++) {
+            int p = pixels[start + Math.min(Math.max(i, 0), last) * step];
+            stack[i + radius] = p;
+            int weight = radius + 1 - Math.abs(i);
+            int c0 = p & 0xff;
+            int c1 = (p >>> 8) & 0xff;
+            int c2 = (p >>> 16) & 0xff;
+            int c3 = p >>> 24;
+            sum0 += c0 * weight;
+            sum1 += c1 * weight;
+            sum2 += c2 * weight;
+            sum3 += c3 * weight;
+            if (i > 0) {
+                in0 += c0;
+                in1 += c1;
+                in2 += c2;
+                in3 += c3;
+            } else {
+                out0 += c0;
+                out1 += c1;
+                out2 += c2;
+                out3 += c3;
+            }
+        }
+
+        int stackPointer = radius;
+        for (int x = 0; x < length; x++) {
+            // Writing in place is safe, the pixels ahead of x are only read after this point
+            pixels[start + x * step] = (int) ((sum0 * multiplier) >>> 32)
+                    | (int) ((sum1 * multiplier) >>> 32) << 8
+                    | (int) ((sum2 * multiplier) >>> 32) << 16
+                    | (int) ((sum3 * multiplier) >>> 32) << 24;
+
+            sum0 -= out0;
+            sum1 -= out1;
+            sum2 -= out2;
+            sum3 -= out3;
+
+            int stackIndex = stackPointer + radius + 1;
+            if (stackIndex >= div) {
+                stackIndex -= div;
+            }
+            int p = stack[stackIndex];
+            out0 -= p & 0xff;
+            out1 -= (p >>> 8) & 0xff;
+            out2 -= (p >>> 16) & 0xff;
+            out3 -= p >>> 24;
+
+            p = pixels[start + Math.min(x + radius + 1, last) * step];
+            stack[stackIndex] = p;
+            in0 += p & 0xff;
+            in1 += (p >>> 8) & 0xff;
+            in2 += (p >>> 16) & 0xff;
+            in3 += p >>> 24;
+
+            sum0 += in0;
+            sum1 += in1;
+            sum2 += in2;
+            sum3 += in3;
+
+            stackPointer++;
+            if (stackPointer >= div) {
+                stackPointer = 0;
+            }
+            p = stack[stackPointer];
+            int c0 = p & 0xff;
+            int c1 = (p >>> 8) & 0xff;
+            int c2 = (p >>> 16) & 0xff;
+            int c3 = p >>> 24;
+            out0 += c0;
+            out1 += c1;
+            out2 += c2;
+            out3 += c3;
+            in0 -= c0;
+            in1 -= c1;
+            in2 -= c2;
+            in3 -= c3;
+        }
+    }
+
+    /**
+     * {@link #blurLine(int[], int, int, int, int, long, int[])} for RGB_565 pixels.
+     * Rounds instead of truncating, 5 bit channels would get visibly darker after two passes.
+     */
+    static void blurLine(short[] pixels, int start, int step, int length,
+                         int radius, long multiplier, int[] stack) {
+        int div = 2 * radius + 1;
+        int last = length - 1;
+
+        int sum0 = 0, sum1 = 0, sum2 = 0;
+        int in0 = 0, in1 = 0, in2 = 0;
+        int out0 = 0, out1 = 0, out2 = 0;
+
+        for (int i = -radius; i <= radius; i++) {
+            int p = pixels[start + Math.min(Math.max(i, 0), last) * step] & 0xFFFF;
+            stack[i + radius] = p;
+            int weight = radius + 1 - Math.abs(i);
+            int c0 = p & 0x1f;
+            int c1 = (p >>> 5) & 0x3f;
+            int c2 = p >>> 11;
+            sum0 += c0 * weight;
+            sum1 += c1 * weight;
+            sum2 += c2 * weight;
+            if (i > 0) {
+                in0 += c0;
+                in1 += c1;
+                in2 += c2;
+            } else {
+                out0 += c0;
+                out1 += c1;
+                out2 += c2;
+            }
+        }
+
+        long half = 1L << 31;
+        int stackPointer = radius;
+        for (int x = 0; x < length; x++) {
+            pixels[start + x * step] = (short) ((int) ((sum0 * multiplier + half) >>> 32)
+                    | (int) ((sum1 * multiplier + half) >>> 32) << 5
+                    | (int) ((sum2 * multiplier + half) >>> 32) << 11);
+
+            sum0 -= out0;
+            sum1 -= out1;
+            sum2 -= out2;
+
+            int stackIndex = stackPointer + radius + 1;
+            if (stackIndex >= div) {
+                stackIndex -= div;
+            }
+            int p = stack[stackIndex];
+            out0 -= p & 0x1f;
+            out1 -= (p >>> 5) & 0x3f;
+            out2 -= p >>> 11;
+
+            p = pixels[start + Math.min(x + radius + 1, last) * step] & 0xFFFF;
+            stack[stackIndex] = p;
+            in0 += p & 0x1f;
+            in1 += (p >>> 5) & 0x3f;
+            in2 += p >>> 11;
+
+            sum0 += in0;
+            sum1 += in1;
+            sum2 += in2;
+
+            stackPointer++;
+            if (stackPointer >= div) {
+                stackPointer = 0;
+            }
+            p = stack[stackPointer];
+            int c0 = p & 0x1f;
+            int c1 = (p >>> 5) & 0x3f;
+            int c2 = p >>> 11;
+            out0 += c0;
+            out1 += c1;
+            out2 += c2;
+            in0 -= c0;
+            in1 -= c1;
+            in2 -= c2;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package eightbitlab.com.blurview;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed pool of worker threads that runs the same task over several stripes of an image in parallel.
+ * The calling thread processes the first stripe itself and returns once all stripes are done.
+ * <p>
+ * Dispatching a task doesn't allocate, so it's safe to use on every frame.
+ * Tasks are executed one at a time, concurrent callers are serialized.
+ */
+final class StripeExecutor {
+
+    // More stripes than this rarely help, the blur passes are memory-bound on phones
+    private static final int MAX_PARALLELISM = 4;
+
+    interface StripeTask {
+        /**
+         * @param stripe      index of the stripe to process, from 0 to stripeCount - 1
+         * @param stripeCount total number of stripes
+         */
+        void run(int stripe, int stripeCount);
+    }
+
+    private final Thread[] workers;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile StripeTask task;
+    private volatile int generation;
+    private volatile Thread caller;
+    private volatile Throwable workerFailure;
+
+    StripeExecutor(int parallelism) {
+        workers = new Thread[Math.max(parallelism, 1) - 1];
+        for (int i = 0; i < workers.length; i++) {
+            final int stripe = i + 1;
+            Thread worker = new Thread(() -> workerLoop(stripe), "BlurView worker " + stripe);
+            worker.setDaemon(true);
+            workers[i] = worker;
+            worker.start();
+        }
+    }
+
+    static StripeExecutor getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    int getParallelism() {
+        return workers.length + 1;
+    }
+
+    /**
+     * Runs the task for every stripe and blocks until all of them are finished.
+     */
+    synchronized void execute(StripeTask task) {
+        int stripeCount = getParallelism();
+        if (stripeCount == 1) {
+            task.run(0, 1);
+            return;
+        }
+
+        this.task = task;
+        caller = Thread.currentThread();
+        workerFailure = null;
+        pending.set(workers.length);
+        // Volatile write publishes the task to the workers
+        generation++;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+
+        try {
+            task.run(0, stripeCount);
+        } finally {
+            while (pending.get() != 0) {
+                LockSupport.park(this);
+            }
+            this.task = null;
+        }
+
+        Throwable failure = workerFailure;
+        if (failure != null) {
+            workerFailure = null;
+            throw new RuntimeException("Blur stripe failed", failure);
+        }
+    }
+
+    private void workerLoop(int stripe) {
+        int seenGeneration = 0;
+        //noinspection InfiniteLoopStatement
+        while (true) {
+            while (generation == seenGeneration) {
+                LockSupport.park(this);
+            }
+            seenGeneration = generation;
+            try {
+                task.run(stripe, getParallelism());
+            } catch (Throwable t) {
+                workerFailure = t;
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    LockSupport.unpark(caller);
+                }
+            }
+        }
+    }
+
+    private static class DefaultHolder {
+        static final StripeExecutor INSTANCE = new StripeExecutor(
+                Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLELISM)
+        );
+    }
+}
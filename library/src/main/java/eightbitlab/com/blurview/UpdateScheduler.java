@@ -0,0 +1,49 @@
+package eightbitlab.com.blurview;
+
+import android.view.View;
+import android.view.animation.AnimationUtils;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Applies a {@link BlurUpdatePolicy} to the frames of a single BlurView, using the Choreographer frame time.
+ */
+final class UpdateScheduler {
+    private final View blurView;
+    private BlurUpdatePolicy policy = BlurUpdatePolicy.everyFrame();
+    private long lastUpdateTime;
+    // When the already posted invalidation for a skipped update fires
+    private long deferredUpdateTime;
+
+    UpdateScheduler(@NonNull View blurView) {
+        this.blurView = blurView;
+    }
+
+    void setPolicy(@NonNull BlurUpdatePolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Must be called during a frame, for example from a PreDraw listener.
+     * If the update isn't allowed yet, but will be later, the BlurView is invalidated at that time.
+     *
+     * @return true if the blur can be updated on this frame
+     */
+    boolean shouldUpdate(boolean moved) {
+        long frameTime = AnimationUtils.currentAnimationTimeMillis();
+        long elapsed = frameTime - lastUpdateTime;
+        if (policy.allowsUpdate(moved, elapsed)) {
+            return true;
+        }
+        long delay = policy.getDeferredUpdateDelay(elapsed);
+        if (delay >= 0 && frameTime >= deferredUpdateTime) {
+            deferredUpdateTime = frameTime + delay;
+            blurView.postInvalidateDelayed(delay);
+        }
+        return false;
+    }
+
+    void onUpdated() {
+        lastUpdateTime = AnimationUtils.currentAnimationTimeMillis();
+    }
+}
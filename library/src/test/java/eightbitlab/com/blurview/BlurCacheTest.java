@@ -0,0 +1,187 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.R)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class BlurCacheTest {
+    private static final int SIZE = 10;
+    // An ARGB_8888 entry of SIZE x SIZE
+    private static final long ENTRY_BYTES = SIZE * SIZE * 4;
+
+    private final Rect area = new Rect(0, 0, 40, 40);
+
+    @Before
+    public void setUp() {
+        BlurCache.setMaxSize(4 * ENTRY_BYTES);
+        BlurCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        BlurCache.setMaxSize(8 * 1024 * 1024);
+        BlurCache.clear();
+    }
+
+    @Test
+    public void hit_copies_the_cached_result() {
+        BlurCache.put(key("content"), bitmap(Color.RED));
+        Bitmap destination = bitmap(Color.BLACK);
+        long hits = BlurCache.getHitCount();
+
+        assertTrue(BlurCache.get(key("content"), destination));
+
+        assertEquals(Color.RED, destination.getPixel(5, 5));
+        assertEquals(hits + 1, BlurCache.getHitCount());
+    }
+
+    @Test
+    public void miss_leaves_the_destination_untouched() {
+        Bitmap destination = bitmap(Color.BLACK);
+        long misses = BlurCache.getMissCount();
+
+        assertFalse(BlurCache.get(key("content"), destination));
+
+        assertEquals(Color.BLACK, destination.getPixel(5, 5));
+        assertEquals(misses + 1, BlurCache.getMissCount());
+    }
+
+    @Test
+    public void cached_result_is_a_copy() {
+        Bitmap blurred = bitmap(Color.RED);
+        BlurCache.put(key("content"), blurred);
+        blurred.eraseColor(Color.BLUE);
+        Bitmap destination = bitmap(Color.BLACK);
+
+        assertTrue(BlurCache.get(key("content"), destination));
+
+        assertEquals(Color.RED, destination.getPixel(5, 5));
+    }
+
+    @Test
+    public void reused_lookup_key_does_not_change_the_cached_entry() {
+        BlurCache.Key key = key("first");
+        BlurCache.put(key, bitmap(Color.RED));
+        key.set("second", area, SIZE, SIZE, 4f, 4f, Bitmap.Config.ARGB_8888, StackBlur.class, false);
+
+        assertFalse(BlurCache.get(key, bitmap(Color.BLACK)));
+        assertTrue(BlurCache.get(key("first"), bitmap(Color.BLACK)));
+    }
+
+    @Test
+    public void least_recently_used_entry_is_evicted() {
+        BlurCache.put(key("a"), bitmap(Color.RED));
+        BlurCache.put(key("b"), bitmap(Color.RED));
+        BlurCache.put(key("c"), bitmap(Color.RED));
+        BlurCache.put(key("d"), bitmap(Color.RED));
+        // "a" is used again, so "b" is the least recently used one
+        assertTrue(BlurCache.get(key("a"), bitmap(Color.BLACK)));
+        long evictions = BlurCache.getEvictionCount();
+
+        BlurCache.put(key("e"), bitmap(Color.RED));
+
+        assertEquals(evictions + 1, BlurCache.getEvictionCount());
+        assertEquals(4 * ENTRY_BYTES, BlurCache.getSize());
+        assertFalse(BlurCache.get(key("b"), bitmap(Color.BLACK)));
+        assertTrue(BlurCache.get(key("a"), bitmap(Color.BLACK)));
+        assertTrue(BlurCache.get(key("e"), bitmap(Color.BLACK)));
+    }
+
+    @Test
+    public void replacing_an_entry_keeps_the_size() {
+        BlurCache.put(key("content"), bitmap(Color.RED));
+        BlurCache.put(key("content"), bitmap(Color.BLUE));
+        Bitmap destination = bitmap(Color.BLACK);
+
+        assertEquals(ENTRY_BYTES, BlurCache.getSize());
+        assertTrue(BlurCache.get(key("content"), destination));
+        assertEquals(Color.BLUE, destination.getPixel(5, 5));
+    }
+
+    @Test
+    public void result_larger_than_the_budget_is_not_cached() {
+        BlurCache.setMaxSize(ENTRY_BYTES - 1);
+
+        BlurCache.put(key("content"), bitmap(Color.RED));
+
+        assertEquals(0, BlurCache.getSize());
+    }
+
+    @Test
+    public void smaller_budget_trims_the_cache() {
+        putEntries(4);
+
+        BlurCache.setMaxSize(2 * ENTRY_BYTES);
+
+        assertEquals(2 * ENTRY_BYTES, BlurCache.getSize());
+        // The newest entries are kept
+        assertFalse(BlurCache.get(key("1"), bitmap(Color.BLACK)));
+        assertTrue(BlurCache.get(key("3"), bitmap(Color.BLACK)));
+    }
+
+    @Test
+    public void trim_memory_levels() {
+        putEntries(4);
+        BlurCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(4 * ENTRY_BYTES, BlurCache.getSize());
+
+        BlurCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(2 * ENTRY_BYTES, BlurCache.getSize());
+
+        BlurCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertEquals(0, BlurCache.getSize());
+
+        putEntries(4);
+        BlurCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(0, BlurCache.getSize());
+    }
+
+    @Test
+    public void keys_differing_in_how_the_content_was_blurred_do_not_match() {
+        BlurCache.put(key("content"), bitmap(Color.RED));
+        Bitmap destination = bitmap(Color.BLACK);
+
+        assertFalse(BlurCache.get(new BlurCache.Key().set("content", area, SIZE, SIZE, 4f, 4f,
+                Bitmap.Config.ARGB_8888, DualKawaseBlur.class, false), destination));
+        assertFalse(BlurCache.get(new BlurCache.Key().set("content", area, SIZE, SIZE, 4f, 4f,
+                Bitmap.Config.ARGB_8888, StackBlur.class, true), destination));
+        assertFalse(BlurCache.get(new BlurCache.Key().set("content", area, SIZE, SIZE, 8f, 4f,
+                Bitmap.Config.ARGB_8888, StackBlur.class, false), destination));
+        assertFalse(BlurCache.get(new BlurCache.Key().set("content", new Rect(4, 0, 44, 40), SIZE, SIZE, 4f, 4f,
+                Bitmap.Config.ARGB_8888, StackBlur.class, false), destination));
+        assertEquals(Color.BLACK, destination.getPixel(5, 5));
+    }
+
+    private void putEntries(int count) {
+        for (int i = 0; i < count; i++) {
+            BlurCache.put(key(String.valueOf(i)), bitmap(Color.RED));
+        }
+    }
+
+    private BlurCache.Key key(Object content) {
+        return new BlurCache.Key().set(content, area, SIZE, SIZE, 4f, 4f, Bitmap.Config.ARGB_8888, StackBlur.class, false);
+    }
+
+    private static Bitmap bitmap(int color) {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(color);
+        return bitmap;
+    }
+}
@@ -0,0 +1,81 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.R)
+public class BlurCalibrationTest {
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        BlurCalibration.reset(context);
+    }
+
+    @After
+    public void tearDown() {
+        BlurCalibration.reset(context);
+    }
+
+    @Test
+    public void nothing_is_read_before_the_result_is_loaded() {
+        persist("LOW", "STACK_BLUR");
+
+        assertFalse(BlurCalibration.isCalibrated());
+        assertEquals(BlurQuality.HIGH, BlurCalibration.getQuality());
+    }
+
+    @Test
+    public void persisted_result_is_loaded() {
+        persist("LOW", "STACK_BLUR");
+
+        BlurCalibration.Result result = BlurCalibration.load(context);
+
+        assertEquals(BlurQuality.LOW, result.getQuality());
+        assertEquals("STACK_BLUR", result.getAlgorithmName());
+        assertTrue(BlurCalibration.isCalibrated());
+        assertEquals(BlurQuality.LOW, BlurCalibration.getQuality());
+        assertTrue(BlurCalibration.createAlgorithm(context) instanceof StackBlur);
+    }
+
+    @Test
+    public void result_of_another_library_version_is_ignored() {
+        persist("ULTRA", null);
+
+        assertNull(BlurCalibration.load(context));
+        assertFalse(BlurCalibration.isCalibrated());
+    }
+
+    @Test
+    public void reset_forgets_the_result() {
+        persist("BALANCED", "DUAL_KAWASE");
+        BlurCalibration.load(context);
+
+        BlurCalibration.reset(context);
+
+        assertFalse(BlurCalibration.isCalibrated());
+        assertNull(BlurCalibration.load(context));
+    }
+
+    private void persist(String quality, String algorithm) {
+        context.getSharedPreferences("eightbitlab.blurview.calibration", Context.MODE_PRIVATE).edit()
+                .putString("quality", quality)
+                .putString("algorithm", algorithm)
+                .commit();
+    }
+}
@@ -0,0 +1,151 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+class BlurEngineTest {
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 80;
+
+    private final BlurEngine engine = new BlurEngine(BlurEngine.Algorithm.STACK_BLUR, 3);
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void blurs_pixels_like_the_kernel() throws Exception {
+        int[] pixels = randomPixels(1);
+        int[] expected = pixels.clone();
+        new StackBlurKernel(new StripeExecutor(1)).blur(expected, WIDTH, HEIGHT, 10);
+
+        int[] result = engine.blur(pixels, WIDTH, HEIGHT, 10f).get(5, TimeUnit.SECONDS);
+
+        assertSame(pixels, result);
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    void blurs_a_batch_in_order() throws Exception {
+        List<int[]> batch = new ArrayList<>();
+        List<int[]> expected = new ArrayList<>();
+        StackBlurKernel kernel = new StackBlurKernel(new StripeExecutor(1));
+        for (int i = 0; i < 10; i++) {
+            int[] pixels = randomPixels(i);
+            batch.add(pixels);
+            int[] blurred = pixels.clone();
+            kernel.blur(blurred, WIDTH, HEIGHT, 7);
+            expected.add(blurred);
+        }
+
+        List<Future<int[]>> futures = engine.blurAll(batch, WIDTH, HEIGHT, 7f);
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertArrayEquals(expected.get(i), futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void calls_back_with_the_result() throws Exception {
+        int[] pixels = randomPixels(2);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<int[]> result = new AtomicReference<>();
+
+        BlurEngine dualKawase = new BlurEngine(BlurEngine.Algorithm.DUAL_KAWASE, 1);
+        dualKawase.blur(pixels, WIDTH, HEIGHT, 25f, new BlurEngine.Callback<int[]>() {
+            @Override
+            public void onBlurred(@NonNull int[] blurred) {
+                result.set(blurred);
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(@NonNull Exception error) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertSame(pixels, result.get());
+        dualKawase.shutdown();
+    }
+
+    @Test
+    void blurs_pixels_without_android_classes() throws Throwable {
+        int[] pixels = randomPixels(3);
+        int[] expected = pixels.clone();
+        new StackBlurKernel(new StripeExecutor(1)).blur(expected, WIDTH, HEIGHT, 10);
+
+        try (URLClassLoader loader = new NoAndroidClassLoader()) {
+            // Method handles resolve just the called methods, reflection would load all the signatures
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> engineClass = loader.loadClass(BlurEngine.class.getName());
+            Object isolatedEngine = lookup.findConstructor(engineClass, MethodType.methodType(void.class)).invoke();
+            Future<?> future = (Future<?>) lookup.findVirtual(engineClass, "blur",
+                    MethodType.methodType(Future.class, int[].class, int.class, int.class, float.class))
+                    .invoke(isolatedEngine, pixels, WIDTH, HEIGHT, 10f);
+            future.get(5, TimeUnit.SECONDS);
+            lookup.findVirtual(engineClass, "shutdown", MethodType.methodType(void.class)).invoke(isolatedEngine);
+        }
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void rejects_too_small_array() {
+        assertThrows(IllegalArgumentException.class, () -> engine.blur(new int[10], WIDTH, HEIGHT, 5f));
+    }
+
+    /**
+     * Loads the library classes on its own and fails on any android class, like a plain JVM would
+     */
+    private static final class NoAndroidClassLoader extends URLClassLoader {
+        NoAndroidClassLoader() {
+            super(new URL[]{BlurEngine.class.getProtectionDomain().getCodeSource().getLocation()},
+                    BlurEngineTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith("android.")) {
+                throw new ClassNotFoundException(name);
+            }
+            if (!name.startsWith(BlurEngine.class.getPackage().getName())) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                return loaded != null ? loaded : findClass(name);
+            }
+        }
+    }
+
+    private static int[] randomPixels(long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,22 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class BlurQualityTest {
+
+    @Test
+    void high_keeps_the_radius() {
+        assertEquals(16f, BlurQuality.HIGH.scaleRadius(16f));
+    }
+
+    @Test
+    void presets_blur_the_same_part_of_the_content() {
+        // The radius in content pixels is the radius in snapshot pixels times the scale factor
+        float contentRadius = 16f * BlurController.DEFAULT_SCALE_FACTOR;
+        for (BlurQuality quality : BlurQuality.values()) {
+            assertEquals(contentRadius, quality.scaleRadius(16f) * quality.scaleFactor, 1e-3f, quality.name());
+        }
+    }
+}
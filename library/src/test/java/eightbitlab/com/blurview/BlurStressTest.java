@@ -0,0 +1,254 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how {@link PreDrawBlurController} scales with the number of BlurViews on one {@link BlurTarget},
+ * on synthetic hierarchies rendered by the real Android graphics under Robolectric.
+ * <p>
+ * A frame is simulated the way the hardware renderer does it: the pre-draw listeners run,
+ * then only the BlurViews are drawn, the rest of the hierarchy keeps its display lists.
+ * The target traversals are counted by a View that sees the capture canvas.
+ * <p>
+ * The thresholds are calibrated against a JDK 17 run: about twice the measured allocations,
+ * so a snapshot reallocated on every frame fails them, and about 3x the slowest measured frame, for slower CI machines.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.R)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class BlurStressTest {
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int SCREEN_HEIGHT = 1920;
+    private static final int WARM_UP_FRAMES = 20;
+    private static final int MEASURED_FRAMES = 30;
+
+    // Per frame, regardless of the number of BlurViews
+    private static final double MAX_TRAVERSALS_PER_FRAME = 1.0;
+    // No bitmap or array allocations are expected in the steady state, only the shadows of the traversal
+    // and the draw. Measured about 200 bytes plus 550 bytes per BlurView, 8.7 KB with 16 BlurViews.
+    private static final long MAX_ALLOCATED_BYTES_PER_FRAME = 4 * 1024;
+    private static final long MAX_ALLOCATED_BYTES_PER_VIEW = 1024;
+    // Measured 5-17 ms per frame, dominated by the single traversal rather than the number of BlurViews
+    private static final long MAX_WALL_TIME_NANOS_PER_FRAME = 50_000_000;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Activity activity;
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+    }
+
+    @Test
+    public void many_blur_views_share_one_traversal() {
+        Scenario scenario = new Scenario(activity, 200, 1);
+        for (int i = 0; i < 16; i++) {
+            scenario.addBlurView(0, i * 110, SCREEN_WIDTH, 100);
+        }
+        Result result = scenario.run(true);
+
+        result.assertWithinThresholds(16);
+        assertEquals(1.0, result.traversalsPerFrame, 0.0);
+    }
+
+    @Test
+    public void deep_hierarchy_is_traversed_once_per_frame() {
+        Scenario scenario = new Scenario(activity, 50, 20);
+        for (int i = 0; i < 4; i++) {
+            scenario.addBlurView(0, i * 400, SCREEN_WIDTH, 300);
+        }
+        Result result = scenario.run(true);
+
+        result.assertWithinThresholds(4);
+    }
+
+    @Test
+    public void blur_views_of_varying_sizes_stay_within_thresholds() {
+        Scenario scenario = new Scenario(activity, 100, 1);
+        scenario.addBlurView(0, 0, SCREEN_WIDTH, 200);
+        scenario.addBlurView(100, 300, 300, 300);
+        scenario.addBlurView(500, 300, 500, 900);
+        scenario.addBlurView(0, 1300, SCREEN_WIDTH, 600);
+        scenario.addBlurView(40, 1700, 64, 64);
+        Result result = scenario.run(true);
+
+        result.assertWithinThresholds(5);
+    }
+
+    @Test
+    public void unchanged_content_is_not_captured_again() {
+        Scenario scenario = new Scenario(activity, 100, 1);
+        for (int i = 0; i < 8; i++) {
+            scenario.addBlurView(0, i * 200, SCREEN_WIDTH, 150);
+        }
+        Result result = scenario.run(false);
+
+        assertEquals(0.0, result.traversalsPerFrame, 0.0);
+        result.assertWithinThresholds(8);
+    }
+
+    /**
+     * A BlurTarget with a list of items, optionally nested in a chain of containers, and BlurViews over it
+     */
+    private static final class Scenario {
+        private final Activity activity;
+        private final BlurTarget target;
+        private final CountingView background;
+        private final FrameLayout overlay;
+        private final List<BlurView> blurViews = new ArrayList<>();
+        private final Canvas frameCanvas = new Canvas(Bitmap.createBitmap(SCREEN_WIDTH, SCREEN_HEIGHT, Bitmap.Config.ARGB_8888));
+
+        Scenario(Activity activity, int itemCount, int depth) {
+            this.activity = activity;
+            FrameLayout root = new FrameLayout(activity);
+            target = new BlurTarget(activity);
+            root.addView(target, match());
+
+            ViewGroup list = target;
+            for (int i = 0; i < depth; i++) {
+                FrameLayout container = new FrameLayout(activity);
+                list.addView(container, match());
+                list = container;
+            }
+            background = new CountingView(activity);
+            list.addView(background, match());
+            int itemHeight = 2 * SCREEN_HEIGHT / itemCount + 1;
+            for (int i = 0; i < itemCount; i++) {
+                View item = new View(activity);
+                item.setBackgroundColor(i % 2 == 0 ? Color.RED : Color.BLUE);
+                FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(SCREEN_WIDTH, itemHeight);
+                params.topMargin = i * itemHeight / 2;
+                list.addView(item, params);
+            }
+
+            overlay = new FrameLayout(activity);
+            root.addView(overlay, match());
+            activity.setContentView(root, new ViewGroup.LayoutParams(SCREEN_WIDTH, SCREEN_HEIGHT));
+        }
+
+        void addBlurView(int left, int top, int width, int height) {
+            BlurView blurView = new BlurView(activity);
+            FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(width, height);
+            params.leftMargin = left;
+            params.topMargin = top;
+            overlay.addView(blurView, params);
+            blurViews.add(blurView);
+        }
+
+        /**
+         * @param changeContent whether the content under the BlurViews changes on every frame
+         */
+        Result run(boolean changeContent) {
+            // Lays out the hierarchy
+            shadowOf(Looper.getMainLooper()).idle();
+            for (BlurView blurView : blurViews) {
+                // StackBlur, RenderScript isn't available on the JVM
+                blurView.setupWith(target, new StackBlur(), BlurController.DEFAULT_SCALE_FACTOR, false);
+            }
+
+            for (int i = 0; i < WARM_UP_FRAMES; i++) {
+                frame(i, changeContent);
+            }
+            CountingView.captures = 0;
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_FRAMES; i++) {
+                frame(WARM_UP_FRAMES + i, changeContent);
+            }
+            long wallTime = System.nanoTime() - start;
+            long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+            return new Result(
+                    (double) CountingView.captures / MEASURED_FRAMES,
+                    allocated / MEASURED_FRAMES,
+                    wallTime / MEASURED_FRAMES);
+        }
+
+        private void frame(int index, boolean changeContent) {
+            if (changeContent) {
+                background.setBackgroundColor(index % 2 == 0 ? Color.WHITE : Color.LTGRAY);
+            }
+            target.getViewTreeObserver().dispatchOnPreDraw();
+            for (int i = 0; i < blurViews.size(); i++) {
+                blurViews.get(i).draw(frameCanvas);
+            }
+        }
+
+        private static ViewGroup.LayoutParams match() {
+            return new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
+        }
+    }
+
+    private static final class Result {
+        final double traversalsPerFrame;
+        final long allocatedBytesPerFrame;
+        final long wallTimeNanosPerFrame;
+
+        Result(double traversalsPerFrame, long allocatedBytesPerFrame, long wallTimeNanosPerFrame) {
+            this.traversalsPerFrame = traversalsPerFrame;
+            this.allocatedBytesPerFrame = allocatedBytesPerFrame;
+            this.wallTimeNanosPerFrame = wallTimeNanosPerFrame;
+        }
+
+        void assertWithinThresholds(int blurViewCount) {
+            assertTrue("Traversals per frame: " + this, traversalsPerFrame <= MAX_TRAVERSALS_PER_FRAME);
+            assertTrue("Allocated bytes per frame: " + this,
+                    allocatedBytesPerFrame <= MAX_ALLOCATED_BYTES_PER_FRAME + MAX_ALLOCATED_BYTES_PER_VIEW * blurViewCount);
+            assertTrue("Wall time per frame: " + this,
+                    wallTimeNanosPerFrame <= MAX_WALL_TIME_NANOS_PER_FRAME);
+        }
+
+        @Override
+        public String toString() {
+            return "traversalsPerFrame=" + traversalsPerFrame +
+                    ", allocatedBytesPerFrame=" + allocatedBytesPerFrame +
+                    ", wallTimeMsPerFrame=" + wallTimeNanosPerFrame / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Counts the draws into the snapshot canvas. It's behind everything else, so it's drawn on every traversal.
+     */
+    private static final class CountingView extends View {
+        static int captures;
+
+        CountingView(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            super.onDraw(canvas);
+            if (canvas instanceof BlurViewCanvas) {
+                captures++;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class BlurUpdatePolicyTest {
+
+    @Test
+    void max_fps_allows_updates_after_the_interval() {
+        BlurUpdatePolicy policy = BlurUpdatePolicy.maxFps(30);
+
+        assertFalse(policy.allowsUpdate(true, 16));
+        // Every second frame on a 60 Hz display, with millisecond rounding
+        assertTrue(policy.allowsUpdate(false, 33));
+        assertTrue(policy.allowsUpdate(false, 34));
+    }
+
+    @Test
+    void max_fps_defers_skipped_update_until_the_interval_passes() {
+        BlurUpdatePolicy policy = BlurUpdatePolicy.maxFps(20);
+
+        assertEquals(34, policy.getDeferredUpdateDelay(16));
+        assertEquals(0, policy.getDeferredUpdateDelay(70));
+    }
+
+    @Test
+    void on_move_only_ignores_elapsed_time() {
+        BlurUpdatePolicy policy = BlurUpdatePolicy.onMoveOnly();
+
+        assertFalse(policy.allowsUpdate(false, 1000));
+        assertTrue(policy.allowsUpdate(true, 0));
+        assertEquals(-1, policy.getDeferredUpdateDelay(0));
+    }
+
+    @Test
+    void manual_never_updates_by_itself() {
+        BlurUpdatePolicy policy = BlurUpdatePolicy.manual();
+
+        assertFalse(policy.allowsUpdate(true, 1000));
+        assertEquals(-1, policy.getDeferredUpdateDelay(0));
+    }
+
+    @Test
+    void every_frame_always_updates() {
+        assertTrue(BlurUpdatePolicy.everyFrame().allowsUpdate(false, 0));
+    }
+}
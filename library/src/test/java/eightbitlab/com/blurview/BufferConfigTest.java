@@ -0,0 +1,59 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.Assert.assertEquals;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.R)
+public class BufferConfigTest {
+    private final StackBlur algorithm = new StackBlur();
+    private View target;
+
+    @Before
+    public void setUp() {
+        target = new View(Robolectric.buildActivity(Activity.class).get());
+        target.setBackgroundColor(Color.WHITE);
+        target.layout(0, 0, 100, 200);
+    }
+
+    @Test
+    public void opaque_area_inside_the_target_is_rgb_565() {
+        assertEquals(Bitmap.Config.RGB_565, choose(new Rect(0, 0, 100, 200)));
+    }
+
+    @Test
+    public void area_past_the_target_edges_keeps_the_alpha() {
+        assertEquals(Bitmap.Config.ARGB_8888, choose(new Rect(-4, 0, 96, 200)));
+        assertEquals(Bitmap.Config.ARGB_8888, choose(new Rect(0, 20, 100, 204)));
+    }
+
+    @Test
+    public void translucent_target_keeps_the_alpha() {
+        target.setBackgroundColor(0x80FFFFFF);
+
+        assertEquals(Bitmap.Config.ARGB_8888, choose(new Rect(0, 0, 100, 200)));
+    }
+
+    @Test
+    public void disabled_reduced_precision_keeps_the_alpha() {
+        assertEquals(Bitmap.Config.ARGB_8888,
+                BufferConfig.choose(algorithm, false, null, target, new Rect(0, 0, 100, 200)));
+    }
+
+    private Bitmap.Config choose(Rect area) {
+        return BufferConfig.choose(algorithm, true, null, target, area);
+    }
+}
@@ -0,0 +1,135 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+class DualKawaseKernelTest {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    private final DualKawaseKernel singleThreaded = new DualKawaseKernel(new StripeExecutor(1));
+    private final DualKawaseKernel multiThreaded = new DualKawaseKernel(new StripeExecutor(4));
+
+    @Test
+    void keeps_uniform_image_unchanged() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, 0xFF336699);
+        int[] expected = pixels.clone();
+
+        multiThreaded.blur(pixels, WIDTH, HEIGHT, 40f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void stripes_produce_the_same_result_as_single_thread() {
+        int[] pixels = randomPixels();
+        int[] expected = pixels.clone();
+
+        singleThreaded.blur(expected, WIDTH, HEIGHT, 25f);
+        multiThreaded.blur(pixels, WIDTH, HEIGHT, 25f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void spreads_an_edge_about_as_much_as_stack_blur() {
+        int radius = 25;
+        int[] kawase = verticalEdge();
+        int[] stack = verticalEdge();
+
+        singleThreaded.blur(kawase, WIDTH, HEIGHT, radius);
+        new StackBlurKernel(new StripeExecutor(1)).blur(stack, WIDTH, HEIGHT, radius);
+
+        double kawaseSigma = edgeSpread(kawase);
+        double stackSigma = edgeSpread(stack);
+        assertTrue(Math.abs(kawaseSigma - stackSigma) < stackSigma * 0.15,
+                "Dual Kawase " + kawaseSigma + ", StackBlur " + stackSigma);
+    }
+
+    @Test
+    void larger_radius_uses_more_iterations() {
+        assertEquals(1, DualKawaseKernel.iterationsFor(1f));
+        assertTrue(DualKawaseKernel.iterationsFor(100f) > DualKawaseKernel.iterationsFor(25f));
+        assertEquals(DualKawaseKernel.MAX_ITERATIONS, DualKawaseKernel.iterationsFor(10000f));
+    }
+
+    @Test
+    void handles_image_smaller_than_the_levels() {
+        int[] pixels = new int[3 * 2];
+        Arrays.fill(pixels, 0x80808080);
+
+        singleThreaded.blur(pixels, 3, 2, 100f);
+
+        for (int pixel : pixels) {
+            assertEquals(0x80808080, pixel);
+        }
+    }
+
+    private static int[] verticalEdge() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            Arrays.fill(pixels, y * WIDTH + WIDTH / 2, (y + 1) * WIDTH, 0xFFFFFFFF);
+        }
+        return pixels;
+    }
+
+    /**
+     * @return standard deviation of the blurred edge profile in the middle row
+     */
+    private static double edgeSpread(int[] pixels) {
+        int row = HEIGHT / 2 * WIDTH;
+        double sum = 0;
+        double weightedSum = 0;
+        for (int x = 0; x < WIDTH - 1; x++) {
+            int step = (pixels[row + x + 1] & 0xFF) - (pixels[row + x] & 0xFF);
+            sum += step;
+            weightedSum += step * x;
+        }
+        double mean = weightedSum / sum;
+        double variance = 0;
+        for (int x = 0; x < WIDTH - 1; x++) {
+            int step = (pixels[row + x + 1] & 0xFF) - (pixels[row + x] & 0xFF);
+            variance += step * (x - mean) * (x - mean);
+        }
+        return Math.sqrt(variance / sum);
+    }
+
+    @Test
+    void keeps_uniform_rgb_565_image_unchanged() {
+        short[] pixels = new short[WIDTH * HEIGHT];
+        Arrays.fill(pixels, (short) 0xFFFF);
+        short[] expected = pixels.clone();
+
+        multiThreaded.blur(pixels, WIDTH, HEIGHT, 40f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void blurs_again_after_the_buffers_are_released() {
+        int[] pixels = randomPixels();
+        int[] expected = pixels.clone();
+        singleThreaded.blur(expected, WIDTH, HEIGHT, 20f);
+
+        singleThreaded.releaseBuffers();
+        singleThreaded.blur(pixels, WIDTH, HEIGHT, 20f);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    private static int[] randomPixels() {
+        Random random = new Random(42);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,84 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Build;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.R)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class KernelBlurTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 32;
+
+    @Test
+    public void uniform_rgb_565_content_keeps_its_color() {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+        bitmap.eraseColor(Color.rgb(200, 100, 40));
+        int color = bitmap.getPixel(0, 0);
+
+        new StackBlur().blur(bitmap, 8f);
+
+        assertEquals(color, bitmap.getPixel(WIDTH / 2, HEIGHT / 2));
+        assertEquals(color, bitmap.getPixel(WIDTH - 1, HEIGHT - 1));
+    }
+
+    @Test
+    public void rgb_565_blur_matches_the_argb_one() {
+        Bitmap rgb565 = stripes(Bitmap.Config.RGB_565);
+        Bitmap argb = stripes(Bitmap.Config.ARGB_8888);
+        // Reused, like in a BlurView, so the second blur goes through the grown buffers
+        StackBlur blur = new StackBlur();
+        blur.blur(Bitmap.createBitmap(8, 8, Bitmap.Config.RGB_565), 2f);
+
+        blur.blur(rgb565, 6f);
+        blur.blur(argb, 6f);
+
+        for (int x = 0; x < WIDTH; x++) {
+            int expected = argb.getPixel(x, HEIGHT / 2);
+            int actual = rgb565.getPixel(x, HEIGHT / 2);
+            // One step of the 5 bit channels
+            assertEquals("Red at " + x, Color.red(expected), Color.red(actual), 8);
+            assertEquals("Green at " + x, Color.green(expected), Color.green(actual), 8);
+            assertEquals("Blue at " + x, Color.blue(expected), Color.blue(actual), 8);
+        }
+    }
+
+    @Test
+    public void engine_blurs_bitmaps_like_the_algorithm() throws Exception {
+        BlurEngine engine = new BlurEngine(BlurEngine.Algorithm.STACK_BLUR, 1);
+        for (Bitmap.Config config : new Bitmap.Config[]{Bitmap.Config.RGB_565, Bitmap.Config.ARGB_8888}) {
+            Bitmap expected = stripes(config);
+            new StackBlur().blur(expected, 6f);
+
+            Bitmap actual = engine.blur(stripes(config), 6f).get(5, TimeUnit.SECONDS);
+
+            assertTrue(config.name(), expected.sameAs(actual));
+        }
+        engine.shutdown();
+    }
+
+    private static Bitmap stripes(Bitmap.Config config) {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, config);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        for (int x = 0; x < WIDTH; x += 8) {
+            paint.setColor(x % 16 == 0 ? Color.RED : Color.BLUE);
+            canvas.drawRect(x, 0, x + 8, HEIGHT, paint);
+        }
+        return bitmap;
+    }
+}
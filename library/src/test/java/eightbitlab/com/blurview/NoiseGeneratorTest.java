@@ -0,0 +1,65 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class NoiseGeneratorTest {
+    private static final int SIZE = 64;
+
+    @Test
+    void generates_the_same_tile_every_time() {
+        assertArrayEquals(NoiseGenerator.generate(SIZE), NoiseGenerator.generate(SIZE));
+    }
+
+    @Test
+    void spreads_the_values_evenly() {
+        int[] histogram = new int[256];
+        for (byte gray : NoiseGenerator.generate(SIZE)) {
+            histogram[gray & 0xFF]++;
+        }
+        // As much light grain as dark grain around the mid gray
+        for (int count : histogram) {
+            assertEquals(SIZE * SIZE / 256, count);
+        }
+    }
+
+    @Test
+    void neighbours_differ_more_than_in_white_noise() {
+        byte[] tile = NoiseGenerator.generate(SIZE);
+        // Mean |a - b| of independent uniform values is a third of the range
+        assertTrue(meanDifference(tile, 1, SIZE - 1) > 256 / 3f * 1.05f);
+    }
+
+    @Test
+    void tile_repeats_without_seams() {
+        byte[] tile = NoiseGenerator.generate(SIZE);
+        float inside = meanDifference(tile, 1, SIZE - 1);
+        // The last column next to the first one of the repeated tile
+        float seam = meanDifference(tile, SIZE - 1, SIZE);
+
+        assertEquals(inside, seam, inside * 0.15f);
+    }
+
+    @Test
+    void rejects_invalid_size() {
+        assertThrows(IllegalArgumentException.class, () -> NoiseGenerator.generate(0));
+    }
+
+    /**
+     * @return mean difference between the columns x and x + 1, wrapping around, for x in from until to
+     */
+    private static float meanDifference(byte[] tile, int from, int to) {
+        long sum = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = from; x < to; x++) {
+                int next = (x + 1) % SIZE;
+                sum += Math.abs((tile[y * SIZE + x] & 0xFF) - (tile[y * SIZE + next] & 0xFF));
+            }
+        }
+        return (float) sum / (SIZE * (to - from));
+    }
+}
@@ -0,0 +1,68 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Build;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.R)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class NoiseTest {
+    private static final int SIZE = NoiseGenerator.DEFAULT_SIZE;
+    private static final float INTENSITY = 0.2f;
+    // Standard deviation of the noise values spread evenly over 0..255, at the intensity
+    private static final double GRAIN = 255 / Math.sqrt(12) * INTENSITY;
+
+    @Test
+    public void grain_does_not_depend_on_the_content() {
+        for (int color : new int[]{Color.BLACK, Color.GRAY, Color.WHITE, Color.RED}) {
+            double[] stats = redStats(color);
+            assertEquals("Color " + Integer.toHexString(color), GRAIN, stats[1], 1.0);
+        }
+    }
+
+    @Test
+    public void content_is_pulled_towards_the_mid_gray_by_the_intensity() {
+        assertEquals(127.5 * INTENSITY, redStats(Color.BLACK)[0], 1.0);
+        assertEquals(255 - 127.5 * INTENSITY, redStats(Color.WHITE)[0], 1.0);
+    }
+
+    @Test
+    public void zero_intensity_draws_nothing() {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.RED);
+
+        Noise.apply(new Canvas(bitmap), 0f, SIZE, SIZE);
+
+        assertEquals(Color.RED, bitmap.getPixel(SIZE / 2, SIZE / 2));
+    }
+
+    /**
+     * @return mean and standard deviation of the red channel of the noise drawn over the color
+     */
+    private static double[] redStats(int color) {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(color);
+        Noise.apply(new Canvas(bitmap), INTENSITY, SIZE, SIZE);
+        int[] pixels = new int[SIZE * SIZE];
+        bitmap.getPixels(pixels, 0, SIZE, 0, 0, SIZE, SIZE);
+        double sum = 0;
+        double squares = 0;
+        for (int pixel : pixels) {
+            int red = Color.red(pixel);
+            sum += red;
+            squares += red * red;
+        }
+        double mean = sum / pixels.length;
+        return new double[]{mean, Math.sqrt(squares / pixels.length - mean * mean)};
+    }
+}
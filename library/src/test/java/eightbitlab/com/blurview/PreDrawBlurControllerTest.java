@@ -0,0 +1,166 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.time.Duration;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.R)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class PreDrawBlurControllerTest {
+    private final Rect stripArea = new Rect();
+    private final Rect stripSource = new Rect();
+
+    @Test
+    public void strip_is_at_the_bottom_when_content_scrolls_up() {
+        // halo = 2 * 4 + 2, the 10 exposed rows are rounded up to 16
+        assertTrue(PreDrawBlurController.computeStrip(-10f, true, 100, 200, 4f, stripArea, stripSource));
+
+        assertEquals(new Rect(0, 164, 100, 200), stripArea);
+        assertEquals(new Rect(0, 10, 100, 36), stripSource);
+    }
+
+    @Test
+    public void strip_is_at_the_top_when_content_scrolls_down() {
+        assertTrue(PreDrawBlurController.computeStrip(10f, true, 100, 200, 4f, stripArea, stripSource));
+
+        assertEquals(new Rect(0, 0, 100, 36), stripArea);
+        assertEquals(new Rect(0, 0, 100, 26), stripSource);
+    }
+
+    @Test
+    public void horizontal_strip_is_at_the_exposed_side() {
+        assertTrue(PreDrawBlurController.computeStrip(-10f, false, 200, 100, 4f, stripArea, stripSource));
+        assertEquals(new Rect(164, 0, 200, 100), stripArea);
+        assertEquals(new Rect(10, 0, 36, 100), stripSource);
+
+        assertTrue(PreDrawBlurController.computeStrip(10f, false, 200, 100, 4f, stripArea, stripSource));
+        assertEquals(new Rect(0, 0, 36, 100), stripArea);
+        assertEquals(new Rect(0, 0, 26, 100), stripSource);
+    }
+
+    @Test
+    public void strip_covers_the_exposed_part_without_the_inner_edge() {
+        float radius = 6f;
+        int halo = 14;
+        int height = 400;
+        for (float shift = 0.5f; shift < 100; shift += 3.7f) {
+            assertTrue(PreDrawBlurController.computeStrip(-shift, true, 50, height, radius, stripArea, stripSource));
+            int top = stripArea.top + stripSource.top;
+            assertEquals(height, stripArea.top + stripSource.bottom);
+            assertTrue("Shift " + shift, top <= height - Math.ceil(shift));
+            assertEquals(stripArea.top + halo, top);
+
+            assertTrue(PreDrawBlurController.computeStrip(shift, true, 50, height, radius, stripArea, stripSource));
+            assertEquals(0, stripArea.top + stripSource.top);
+            assertTrue("Shift " + shift, stripSource.bottom >= Math.ceil(shift));
+            assertEquals(stripArea.bottom - halo, stripSource.bottom);
+        }
+    }
+
+    @Test
+    public void strip_size_is_rounded_to_buffer_row_steps() {
+        assertTrue(PreDrawBlurController.computeStrip(-1f, true, 100, 200, 4f, stripArea, stripSource));
+        int height = stripArea.height();
+        assertTrue(PreDrawBlurController.computeStrip(-15.5f, true, 100, 200, 4f, stripArea, stripSource));
+
+        assertEquals(height, stripArea.height());
+    }
+
+    @Test
+    public void strip_larger_than_half_of_the_buffer_is_rejected() {
+        // 80 exposed rows and 20 halo rows are exactly a half
+        assertTrue(PreDrawBlurController.computeStrip(-80f, true, 100, 200, 4f, stripArea, stripSource));
+        assertFalse(PreDrawBlurController.computeStrip(-81f, true, 100, 200, 4f, stripArea, stripSource));
+        assertFalse(PreDrawBlurController.computeStrip(81f, false, 200, 100, 4f, stripArea, stripSource));
+    }
+
+    @Test
+    public void full_update_follows_when_the_scroll_stops() {
+        Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        FrameLayout root = new FrameLayout(activity);
+        BlurTarget target = new BlurTarget(activity);
+        target.setBackgroundColor(Color.WHITE);
+        root.addView(target, new ViewGroup.LayoutParams(400, 1000));
+        // An invalidated direct child of the target makes the whole target dirty
+        FrameLayout content = new FrameLayout(activity);
+        target.addView(content, new ViewGroup.LayoutParams(400, 1000));
+        FrameLayout list = new FrameLayout(activity);
+        content.addView(list, new ViewGroup.LayoutParams(400, 1000));
+        for (int i = 0; i < 20; i++) {
+            View item = new View(activity);
+            item.setBackgroundColor(i % 2 == 0 ? Color.RED : Color.BLUE);
+            FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(400, 100);
+            params.topMargin = i * 100;
+            list.addView(item, params);
+        }
+        CountingBlurView blurView = new CountingBlurView(activity);
+        root.addView(blurView, new FrameLayout.LayoutParams(400, 800));
+        activity.setContentView(root);
+        shadowOf(Looper.getMainLooper()).idle();
+        blurView.setupWith(target, new StackBlur(), BlurController.DEFAULT_SCALE_FACTOR, false)
+                .setScrollingContent(list)
+                // A strip with the halo of the default radius wouldn't be cheaper than a full update of this buffer
+                .setBlurRadius(4f);
+        PreDrawBlurController controller = (PreDrawBlurController) blurView.blurController;
+        Canvas canvas = new Canvas(Bitmap.createBitmap(400, 800, Bitmap.Config.ARGB_8888));
+        controller.updateBlur();
+        controller.draw(canvas);
+
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < list.getChildCount(); j++) {
+                list.getChildAt(j).offsetTopAndBottom(-8);
+            }
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(16));
+        }
+        BlurStats stats = blurView.getStats();
+        assertEquals(3, stats.getScrollUpdates());
+        long updates = stats.getUpdatesPerformed();
+        blurView.invalidations = 0;
+
+        // Nothing changes anymore, only the posted invalidation triggers the next frame
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(150));
+        assertEquals(1, blurView.invalidations);
+        // Robolectric doesn't draw the BlurView, so its invalidation doesn't schedule a traversal
+        target.getViewTreeObserver().dispatchOnPreDraw();
+
+        assertEquals(3, stats.getScrollUpdates());
+        assertEquals(updates + 1, stats.getUpdatesPerformed());
+    }
+
+    private static final class CountingBlurView extends BlurView {
+        int invalidations;
+
+        CountingBlurView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void invalidate() {
+            super.invalidate();
+            invalidations++;
+        }
+    }
+}
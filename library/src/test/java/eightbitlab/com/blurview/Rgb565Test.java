@@ -0,0 +1,56 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class Rgb565Test {
+
+    @Test
+    void round_trip_keeps_every_value() {
+        short[] packed = new short[1 << 16];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = (short) i;
+        }
+        int[] argb = new int[packed.length];
+        short[] repacked = new short[packed.length];
+
+        Rgb565.unpack(packed, argb, packed.length);
+        Rgb565.pack(argb, repacked, argb.length);
+
+        for (int i = 0; i < packed.length; i++) {
+            assertEquals(packed[i], repacked[i]);
+        }
+    }
+
+    @Test
+    void unpacks_to_the_full_range() {
+        int[] argb = new int[3];
+
+        Rgb565.unpack(new short[]{0, (short) 0xFFFF, (short) 0xF800}, argb, 3);
+
+        assertEquals(0xFF000000, argb[0]);
+        assertEquals(0xFFFFFFFF, argb[1]);
+        assertEquals(0xFFFF0000, argb[2]);
+    }
+
+    @Test
+    void packs_to_the_nearest_value() {
+        short[] packed = new short[2];
+
+        // 0x84 is closer to 16/31 than to 15/31, 0x7B is closer to 15/31
+        Rgb565.pack(new int[]{0xFF840000, 0xFF7B0000}, packed, 2);
+
+        assertEquals(16 << 11, packed[0] & 0xFFFF);
+        assertEquals(15 << 11, packed[1] & 0xFFFF);
+    }
+
+    @Test
+    void converts_only_the_given_count() {
+        int[] argb = {1, 2};
+
+        Rgb565.unpack(new short[]{0, 0}, argb, 1);
+
+        assertEquals(2, argb[1]);
+    }
+}
@@ -0,0 +1,106 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.graphics.Point;
+import android.os.Build;
+import android.os.Looper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.R)
+public class ScrollTrackerTest {
+    private FrameLayout container;
+    private ScrollTracker tracker;
+    private final Point delta = new Point();
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        container = new FrameLayout(activity);
+        for (int i = 0; i < 3; i++) {
+            FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(100, 100);
+            params.topMargin = i * 100;
+            container.addView(new View(activity), params);
+        }
+        activity.setContentView(container, new FrameLayout.LayoutParams(100, 300));
+        shadowOf(Looper.getMainLooper()).idle();
+        tracker = new ScrollTracker(container);
+        tracker.reset();
+    }
+
+    @Test
+    public void unmoved_content_has_zero_delta() {
+        assertTrue(tracker.computeDelta(delta));
+        assertEquals(new Point(0, 0), delta);
+    }
+
+    @Test
+    public void moved_children_are_tracked() {
+        // Like a RecyclerView
+        offsetChildren(-30);
+
+        assertTrue(tracker.computeDelta(delta));
+        assertEquals(new Point(0, -30), delta);
+    }
+
+    @Test
+    public void scroll_position_is_tracked() {
+        // Like a ScrollView
+        container.scrollTo(12, 40);
+
+        assertTrue(tracker.computeDelta(delta));
+        assertEquals(new Point(-12, -40), delta);
+    }
+
+    @Test
+    public void delta_is_relative_to_the_last_reset() {
+        offsetChildren(-30);
+        tracker.reset();
+        offsetChildren(-5);
+
+        assertTrue(tracker.computeDelta(delta));
+        assertEquals(new Point(0, -5), delta);
+    }
+
+    @Test
+    public void children_moving_by_different_distances_are_not_a_scroll() {
+        container.getChildAt(0).offsetTopAndBottom(-30);
+        container.getChildAt(2).offsetTopAndBottom(-20);
+
+        assertFalse(tracker.computeDelta(delta));
+    }
+
+    @Test
+    public void removed_anchor_is_not_tracked() {
+        container.removeViewAt(0);
+
+        assertFalse(tracker.computeDelta(delta));
+    }
+
+    @Test
+    public void empty_container_is_not_tracked() {
+        container.removeAllViews();
+        tracker.reset();
+
+        assertFalse(tracker.computeDelta(delta));
+    }
+
+    private void offsetChildren(int offset) {
+        for (int i = 0; i < container.getChildCount(); i++) {
+            container.getChildAt(i).offsetTopAndBottom(offset);
+        }
+    }
+}
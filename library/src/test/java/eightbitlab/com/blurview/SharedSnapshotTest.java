@@ -0,0 +1,89 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.R)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SharedSnapshotTest {
+    private BlurTarget target;
+    private FrameLayout overlay;
+    private BlurView first;
+    private BlurView second;
+    private SharedSnapshot snapshot;
+    private long captures;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        FrameLayout root = new FrameLayout(activity);
+        target = new BlurTarget(activity);
+        root.addView(target, new ViewGroup.LayoutParams(300, 400));
+        View content = new View(activity);
+        content.setBackgroundColor(Color.RED);
+        target.addView(content, new ViewGroup.LayoutParams(300, 400));
+        overlay = new FrameLayout(activity);
+        root.addView(overlay, new ViewGroup.LayoutParams(300, 400));
+        first = addBlurView(activity, 0);
+        second = addBlurView(activity, 200);
+        activity.setContentView(root);
+        shadowOf(Looper.getMainLooper()).idle();
+        first.setupWith(target, new StackBlur(), BlurController.DEFAULT_SCALE_FACTOR, false);
+        second.setupWith(target, new StackBlur(), BlurController.DEFAULT_SCALE_FACTOR, false);
+        snapshot = target.sharedSnapshots.get(0);
+
+        frame();
+        frame();
+        captures = snapshot.captureCount;
+    }
+
+    @Test
+    public void detached_blur_view_does_not_release_the_snapshot_of_the_others() {
+        overlay.removeView(first);
+        // Blurred again, but the content didn't change
+        second.setBlurRadius(8f);
+        frame();
+
+        assertEquals(captures, snapshot.captureCount);
+    }
+
+    @Test
+    public void snapshot_is_released_with_the_last_buffers() {
+        overlay.removeView(first);
+        overlay.removeView(second);
+        overlay.addView(second, new FrameLayout.LayoutParams(300, 100));
+        frame();
+
+        assertEquals(captures + 1, snapshot.captureCount);
+    }
+
+    private BlurView addBlurView(Activity activity, int top) {
+        BlurView blurView = new BlurView(activity);
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(300, 100);
+        params.topMargin = top;
+        overlay.addView(blurView, params);
+        return blurView;
+    }
+
+    private void frame() {
+        shadowOf(Looper.getMainLooper()).idle();
+        target.getViewTreeObserver().dispatchOnPreDraw();
+    }
+}
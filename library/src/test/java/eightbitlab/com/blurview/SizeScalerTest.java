@@ -33,6 +33,25 @@ class SizeScalerTest {
         assertEquals(isZeroSized, scaler.isZeroSized(x, y));
     }
 
+    @ParameterizedTest
+    @CsvSource({"0,0", "8,0", "9,1", "25,2", "150,5", "10000,6"})
+    void picks_downsample_steps_for_blur_radius(float radius, int expectedSteps) {
+        assertEquals(expectedSteps, SizeScaler.downsampleSteps(radius));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1080,1920,192,241", "1000,256,128,33", "8,8,64,2", "7,7,64,2"})
+    void covers_the_view_on_the_parent_grid(int x, int y, int width, int height) {
+        assertEquals(size(width, height), scaler.scaleToGrid(x, y));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"0,0,0", "1,0,64", "64,64,64", "100,64,128"})
+    void aligns_buffer_edges_to_the_stride(int value, int roundedDown, int roundedUp) {
+        assertEquals(roundedDown, scaler.roundSizeDown(value));
+        assertEquals(roundedUp, scaler.roundSize(value));
+    }
+
     @SuppressWarnings("unused")
     private static Stream<Arguments> scalingResults() {
         return Stream.of(
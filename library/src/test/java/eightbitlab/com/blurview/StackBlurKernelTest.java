@@ -0,0 +1,139 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+class StackBlurKernelTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    private final StackBlurKernel singleThreaded = new StackBlurKernel(new StripeExecutor(1));
+    private final StackBlurKernel multiThreaded = new StackBlurKernel(new StripeExecutor(4));
+
+    @Test
+    void keeps_uniform_image_unchanged() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, 0xFF336699);
+        int[] expected = pixels.clone();
+
+        multiThreaded.blur(pixels, WIDTH, HEIGHT, 40);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void zero_radius_is_noop() {
+        int[] pixels = randomPixels();
+        int[] expected = pixels.clone();
+
+        multiThreaded.blur(pixels, WIDTH, HEIGHT, 0);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void stripes_produce_the_same_result_as_single_thread() {
+        int[] pixels = randomPixels();
+        int[] expected = pixels.clone();
+
+        singleThreaded.blur(expected, WIDTH, HEIGHT, 7);
+        multiThreaded.blur(pixels, WIDTH, HEIGHT, 7);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    void spreads_single_pixel_symmetrically_per_channel() {
+        int size = 41;
+        int[] pixels = new int[size * size];
+        pixels[20 * size + 20] = 0xFF00FF00;
+
+        singleThreaded.blur(pixels, size, size, 5);
+
+        int center = pixels[20 * size + 20];
+        assertEquals(0, center & 0xFF);
+        assertEquals(0, (center >>> 16) & 0xFF);
+        assertTrue(((center >>> 8) & 0xFF) > 0);
+        assertEquals(pixels[20 * size + 17], pixels[20 * size + 23]);
+        assertEquals(pixels[17 * size + 20], pixels[23 * size + 20]);
+        assertEquals(0, pixels[20 * size + 26]);
+    }
+
+    @Test
+    void handles_radius_larger_than_image() {
+        int[] pixels = new int[4 * 3];
+        Arrays.fill(pixels, 0x80808080);
+
+        singleThreaded.blur(pixels, 4, 3, 100);
+
+        for (int pixel : pixels) {
+            assertEquals(0x80808080, pixel);
+        }
+    }
+
+    @Test
+    void keeps_uniform_rgb_565_image_unchanged() {
+        for (short color : new short[]{(short) 0xFFFF, (short) 0x8410, 0x1234}) {
+            short[] pixels = new short[WIDTH * HEIGHT];
+            Arrays.fill(pixels, color);
+            short[] expected = pixels.clone();
+
+            multiThreaded.blur(pixels, WIDTH, HEIGHT, 40);
+
+            assertArrayEquals(expected, pixels);
+        }
+    }
+
+    @Test
+    void rgb_565_blur_is_within_a_step_of_the_argb_one() {
+        short[] packed = randomPackedPixels();
+        int[] argb = new int[packed.length];
+        Rgb565.unpack(packed, argb, packed.length);
+        singleThreaded.blur(argb, WIDTH, HEIGHT, 9);
+        short[] expected = new short[packed.length];
+        Rgb565.pack(argb, expected, argb.length);
+
+        singleThreaded.blur(packed, WIDTH, HEIGHT, 9);
+
+        for (int i = 0; i < packed.length; i++) {
+            assertTrue(Math.abs((packed[i] >>> 11 & 0x1F) - (expected[i] >>> 11 & 0x1F)) <= 1, "Red at " + i);
+            assertTrue(Math.abs((packed[i] >>> 5 & 0x3F) - (expected[i] >>> 5 & 0x3F)) <= 1, "Green at " + i);
+            assertTrue(Math.abs((packed[i] & 0x1F) - (expected[i] & 0x1F)) <= 1, "Blue at " + i);
+        }
+    }
+
+    @Test
+    void rgb_565_stripes_produce_the_same_result_as_single_thread() {
+        short[] pixels = randomPackedPixels();
+        short[] expected = pixels.clone();
+
+        singleThreaded.blur(expected, WIDTH, HEIGHT, 7);
+        multiThreaded.blur(pixels, WIDTH, HEIGHT, 7);
+
+        assertArrayEquals(expected, pixels);
+    }
+
+    private static short[] randomPackedPixels() {
+        Random random = new Random(42);
+        short[] pixels = new short[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (short) random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static int[] randomPixels() {
+        Random random = new Random(42);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,285 @@
+package eightbitlab.com.blurview;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowTrace;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fails if a steady-state blur frame allocates on the calling thread or on the stripe workers.
+ * The controller cases run {@link PreDrawBlurController} on the real Android graphics under Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.R)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SteadyStateAllocationTest {
+    // Enough for the JIT to settle, compilation and deoptimization can allocate a few bytes on the way
+    private static final int WARM_UP_FRAMES = 500;
+    private static final int MEASURED_FRAMES = 100;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void stack_blur_frame_does_not_allocate() {
+        StripeExecutor executor = new StripeExecutor(4);
+        StackBlurKernel kernel = new StackBlurKernel(executor);
+        int width = 270;
+        int height = 480;
+        int[] pixels = randomPixels(width * height);
+
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            kernel.blur(pixels, width, height, 16);
+        }
+
+        long[] threadIds = blurThreadIds();
+        // The first query can allocate internally
+        allocatedBytes(threadIds);
+        long before = allocatedBytes(threadIds);
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            kernel.blur(pixels, width, height, 16);
+        }
+        long allocated = allocatedBytes(threadIds) - before;
+
+        assertEquals("Bytes allocated in " + MEASURED_FRAMES + " frames", 0, allocated);
+    }
+
+    @Test
+    public void dual_kawase_frame_does_not_allocate() {
+        StripeExecutor executor = new StripeExecutor(4);
+        DualKawaseKernel kernel = new DualKawaseKernel(executor);
+        int width = 270;
+        int height = 480;
+        int[] pixels = randomPixels(width * height);
+
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            kernel.blur(pixels, width, height, 40f);
+        }
+
+        long[] threadIds = blurThreadIds();
+        // The first query can allocate internally
+        allocatedBytes(threadIds);
+        long before = allocatedBytes(threadIds);
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            kernel.blur(pixels, width, height, 40f);
+        }
+        long allocated = allocatedBytes(threadIds) - before;
+
+        assertEquals("Bytes allocated in " + MEASURED_FRAMES + " frames", 0, allocated);
+    }
+
+    @Test
+    public void controller_update_and_draw_do_not_allocate() {
+        Frame frame = new Frame(new StackBlur());
+
+        assertEquals("Bytes allocated in " + MEASURED_FRAMES + " frames", 0, frame.measure(true));
+    }
+
+    @Test
+    public void controller_skipped_update_and_draw_do_not_allocate() {
+        Frame frame = new Frame(new StackBlur());
+
+        assertEquals("Bytes allocated in " + MEASURED_FRAMES + " frames", 0, frame.measure(false));
+    }
+
+    @Test
+    public void controller_with_dual_kawase_does_not_allocate() {
+        Frame frame = new Frame(new DualKawaseBlur());
+
+        assertEquals("Bytes allocated in " + MEASURED_FRAMES + " frames", 0, frame.measure(true));
+    }
+
+    /**
+     * A BlurTarget with some content and one BlurView over it, updated and drawn like on a real frame.
+     * <p>
+     * Robolectric implements some View methods with a reflective call to the real code, which allocates on every call.
+     * The test Views override the ones used per frame, so only the allocations of the library are counted.
+     */
+    private final class Frame {
+        private final ContentView background;
+        private final PreDrawBlurController controller;
+        private final Canvas canvas = new Canvas(Bitmap.createBitmap(540, 960, Bitmap.Config.ARGB_8888));
+        private int index;
+
+        Frame(BlurAlgorithm algorithm) {
+            // The shadow keeps every finished trace section
+            ShadowTrace.setEnabled(false);
+            Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+            FrameLayout root = new FrameLayout(activity);
+            BlurTarget target = new TestTarget(activity);
+            root.addView(target, new ViewGroup.LayoutParams(540, 960));
+            background = new ContentView(activity, Color.WHITE);
+            target.addView(background, new ViewGroup.LayoutParams(540, 960));
+            for (int i = 0; i < 10; i++) {
+                FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(540, 100);
+                params.topMargin = i * 96;
+                target.addView(new ContentView(activity, i % 2 == 0 ? Color.RED : Color.BLUE), params);
+            }
+            BlurView blurView = new TestBlurView(activity);
+            FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(500, 300);
+            params.topMargin = 200;
+            params.leftMargin = 20;
+            root.addView(blurView, params);
+            activity.setContentView(root);
+            shadowOf(Looper.getMainLooper()).idle();
+
+            blurView.setupWith(target, algorithm, BlurController.DEFAULT_SCALE_FACTOR, true);
+            controller = (PreDrawBlurController) blurView.blurController;
+        }
+
+        /**
+         * @param changeContent whether the content under the BlurView changes on every frame
+         * @return bytes allocated on the blur threads in {@link #MEASURED_FRAMES} frames
+         */
+        long measure(boolean changeContent) {
+            for (int i = 0; i < WARM_UP_FRAMES; i++) {
+                frame(changeContent);
+            }
+            long[] threadIds = blurThreadIds();
+            allocatedBytes(threadIds);
+            long before = allocatedBytes(threadIds);
+            for (int i = 0; i < MEASURED_FRAMES; i++) {
+                frame(changeContent);
+            }
+            return allocatedBytes(threadIds) - before;
+        }
+
+        private void frame(boolean changeContent) {
+            if (changeContent) {
+                background.setColor(index++ % 2 == 0 ? Color.WHITE : Color.LTGRAY);
+            }
+            controller.updateBlur();
+            controller.draw(canvas);
+        }
+    }
+
+    private static void getLocationInRoot(View view, int[] location) {
+        int x = 0;
+        int y = 0;
+        for (View v = view; v != null; v = v.getParent() instanceof View ? (View) v.getParent() : null) {
+            // Nothing is scrolled, and getScrollX() is one of the shadowed methods
+            x += v.getLeft();
+            y += v.getTop();
+        }
+        location[0] = x;
+        location[1] = y;
+    }
+
+    private static final class TestTarget extends BlurTarget {
+        TestTarget(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            dispatchDraw(canvas);
+        }
+
+        @Override
+        public void getLocationOnScreen(int[] outLocation) {
+            getLocationInRoot(this, outLocation);
+        }
+    }
+
+    private static final class TestBlurView extends BlurView {
+        private final int[] location = new int[2];
+
+        TestBlurView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void getLocationOnScreen(int[] outLocation) {
+            getLocationInRoot(this, outLocation);
+        }
+
+        @Override
+        public boolean getGlobalVisibleRect(Rect r, Point globalOffset) {
+            getLocationInRoot(this, location);
+            r.set(location[0], location[1], location[0] + getWidth(), location[1] + getHeight());
+            if (globalOffset != null) {
+                globalOffset.set(location[0], location[1]);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Fills its bounds with a color. Invalidates the target the way the hardware renderer does on API 26+.
+     */
+    private static final class ContentView extends View {
+        private final Paint paint = new Paint();
+
+        ContentView(Context context, int color) {
+            super(context);
+            paint.setColor(color);
+        }
+
+        void setColor(int color) {
+            paint.setColor(color);
+            getParent().onDescendantInvalidated(this, this);
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            canvas.drawRect(0, 0, getWidth(), getHeight(), paint);
+        }
+    }
+
+    private long[] blurThreadIds() {
+        List<Long> ids = new ArrayList<>();
+        ids.add(Thread.currentThread().getId());
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("BlurView worker")) {
+                ids.add(thread.getId());
+            }
+        }
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    private long allocatedBytes(long[] threadIds) {
+        long total = 0;
+        for (long id : threadIds) {
+            total += threads.getThreadAllocatedBytes(id);
+        }
+        return total;
+    }
+
+    private static int[] randomPixels(int size) {
+        Random random = new Random(7);
+        int[] pixels = new int[size];
+        for (int i = 0; i < size; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+}